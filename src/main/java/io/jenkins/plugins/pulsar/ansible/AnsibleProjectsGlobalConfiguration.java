@@ -13,6 +13,24 @@ import org.kohsuke.stapler.DataBoundSetter;
 @Symbol("ansibleProjects")
 public class AnsibleProjectsGlobalConfiguration extends GlobalConfiguration {
     private List<AnsibleProject> projects = new ArrayList<>();
+    private int maxSnapshotsPerNode = 10;
+    private int refCacheTtlSeconds = 300;
+    private String cacheRoot = "/var/tmp/jenkins-pulsar";
+    private boolean gitMirrors = false;
+    private boolean prewarmEnabled = false;
+    private int prewarmMaxPerNode = 2;
+    private int prewarmTtlMinutes = 15;
+    private boolean warmNodeAffinity = true;
+    private int maxContextsPerNode = 20;
+    private int contextIdleTtlMinutes = 1440;
+    private int minFreeDiskPercent = 10;
+    private int minFreeInodesPercent = 10;
+    private int playbookEventsPerHost = 20;
+    private int timingRegressionPercent = 100;
+    private int sshControlPersistSeconds = 1800;
+    private int factCacheTimeoutSeconds = 7200;
+    private int maxDependencySetsPerNode = 5;
+    private int deployMemoWindowMinutes = 0;
 
     public AnsibleProjectsGlobalConfiguration() {
         load();
@@ -33,6 +51,216 @@ public class AnsibleProjectsGlobalConfiguration extends GlobalConfiguration {
         save();
     }
 
+    /** Maximum number of environment snapshot images kept per node */
+    public int getMaxSnapshotsPerNode() {
+        return maxSnapshotsPerNode;
+    }
+
+    @DataBoundSetter
+    public void setMaxSnapshotsPerNode(int maxSnapshotsPerNode) {
+        this.maxSnapshotsPerNode = Math.max(1, maxSnapshotsPerNode);
+        save();
+    }
+
+    /** How long remote branches and tags are served from cache before a background refresh */
+    public int getRefCacheTtlSeconds() {
+        return refCacheTtlSeconds;
+    }
+
+    @DataBoundSetter
+    public void setRefCacheTtlSeconds(int refCacheTtlSeconds) {
+        this.refCacheTtlSeconds = Math.max(0, refCacheTtlSeconds);
+        save();
+    }
+
+    /** Node directory mounted into exec containers for caches shared between containers */
+    public String getCacheRoot() {
+        String root = cacheRoot != null ? cacheRoot.trim() : "";
+        while (root.length() > 1 && root.endsWith("/")) {
+            root = root.substring(0, root.length() - 1);
+        }
+        return root.startsWith("/") && root.length() > 1 ? root : "/var/tmp/jenkins-pulsar";
+    }
+
+    @DataBoundSetter
+    public void setCacheRoot(String cacheRoot) {
+        this.cacheRoot = cacheRoot;
+        save();
+    }
+
+    /** Check projects out from a per-node bare mirror under the cache root */
+    public boolean isGitMirrors() {
+        return gitMirrors;
+    }
+
+    @DataBoundSetter
+    public void setGitMirrors(boolean gitMirrors) {
+        this.gitMirrors = gitMirrors;
+        save();
+    }
+
+    /** Start preparing Ansible contexts on the likely node while deployment builds wait in the queue */
+    public boolean isPrewarmEnabled() {
+        return prewarmEnabled;
+    }
+
+    @DataBoundSetter
+    public void setPrewarmEnabled(boolean prewarmEnabled) {
+        this.prewarmEnabled = prewarmEnabled;
+        save();
+    }
+
+    /** Maximum number of pre-warmed contexts being prepared or waiting for a build per node */
+    public int getPrewarmMaxPerNode() {
+        return prewarmMaxPerNode;
+    }
+
+    @DataBoundSetter
+    public void setPrewarmMaxPerNode(int prewarmMaxPerNode) {
+        this.prewarmMaxPerNode = Math.max(1, prewarmMaxPerNode);
+        save();
+    }
+
+    /** How long a pre-warmed context is kept when no build picks it up */
+    public int getPrewarmTtlMinutes() {
+        return prewarmTtlMinutes;
+    }
+
+    @DataBoundSetter
+    public void setPrewarmTtlMinutes(int prewarmTtlMinutes) {
+        this.prewarmTtlMinutes = Math.max(1, prewarmTtlMinutes);
+        save();
+    }
+
+    /** Prefer nodes holding a warm context or container when scheduling deployment builds */
+    public boolean isWarmNodeAffinity() {
+        return warmNodeAffinity;
+    }
+
+    @DataBoundSetter
+    public void setWarmNodeAffinity(boolean warmNodeAffinity) {
+        this.warmNodeAffinity = warmNodeAffinity;
+        save();
+    }
+
+    /** Maximum number of Ansible contexts (and checkouts) kept per node, 0 for no limit */
+    public int getMaxContextsPerNode() {
+        return maxContextsPerNode;
+    }
+
+    @DataBoundSetter
+    public void setMaxContextsPerNode(int maxContextsPerNode) {
+        this.maxContextsPerNode = Math.max(0, maxContextsPerNode);
+        save();
+    }
+
+    /** How long an Ansible context no build uses is kept, 0 to keep it until evicted for capacity */
+    public int getContextIdleTtlMinutes() {
+        return contextIdleTtlMinutes;
+    }
+
+    @DataBoundSetter
+    public void setContextIdleTtlMinutes(int contextIdleTtlMinutes) {
+        this.contextIdleTtlMinutes = Math.max(0, contextIdleTtlMinutes);
+        save();
+    }
+
+    /** Idle contexts are evicted while free disk space in an exec container is below this share */
+    public int getMinFreeDiskPercent() {
+        return minFreeDiskPercent;
+    }
+
+    @DataBoundSetter
+    public void setMinFreeDiskPercent(int minFreeDiskPercent) {
+        this.minFreeDiskPercent = Math.min(99, Math.max(0, minFreeDiskPercent));
+        save();
+    }
+
+    /** Idle contexts are evicted while free inodes in an exec container are below this share */
+    public int getMinFreeInodesPercent() {
+        return minFreeInodesPercent;
+    }
+
+    @DataBoundSetter
+    public void setMinFreeInodesPercent(int minFreeInodesPercent) {
+        this.minFreeInodesPercent = Math.min(99, Math.max(0, minFreeInodesPercent));
+        save();
+    }
+
+    /** Number of most recent task events kept per host in playbook results, on top of the counters */
+    public int getPlaybookEventsPerHost() {
+        return playbookEventsPerHost;
+    }
+
+    @DataBoundSetter
+    public void setPlaybookEventsPerHost(int playbookEventsPerHost) {
+        this.playbookEventsPerHost = Math.max(0, playbookEventsPerHost);
+        save();
+    }
+
+    /** How much slower than its baseline median a task or role must be to be flagged, 0 to disable */
+    public int getTimingRegressionPercent() {
+        return timingRegressionPercent;
+    }
+
+    @DataBoundSetter
+    public void setTimingRegressionPercent(int timingRegressionPercent) {
+        this.timingRegressionPercent = Math.max(0, timingRegressionPercent);
+        save();
+    }
+
+    /** How long idle SSH master connections of an environment stay open, 0 to keep the ansible.cfg settings */
+    public int getSshControlPersistSeconds() {
+        return sshControlPersistSeconds;
+    }
+
+    @DataBoundSetter
+    public void setSshControlPersistSeconds(int sshControlPersistSeconds) {
+        this.sshControlPersistSeconds = Math.max(0, sshControlPersistSeconds);
+        save();
+    }
+
+    /** How long cached host facts are used before they are gathered again, 0 to disable the fact cache */
+    public int getFactCacheTimeoutSeconds() {
+        return factCacheTimeoutSeconds;
+    }
+
+    @DataBoundSetter
+    public void setFactCacheTimeoutSeconds(int factCacheTimeoutSeconds) {
+        this.factCacheTimeoutSeconds = Math.max(0, factCacheTimeoutSeconds);
+        save();
+    }
+
+    /** Installed requirement sets kept per node, 0 leaves installing requirements to the pipeline */
+    public int getMaxDependencySetsPerNode() {
+        return maxDependencySetsPerNode;
+    }
+
+    @DataBoundSetter
+    public void setMaxDependencySetsPerNode(int maxDependencySetsPerNode) {
+        this.maxDependencySetsPerNode = Math.max(0, maxDependencySetsPerNode);
+        save();
+    }
+
+    /** How long a successful run lets identical runs of the same environment be skipped, 0 never skips */
+    public int getDeployMemoWindowMinutes() {
+        return deployMemoWindowMinutes;
+    }
+
+    @DataBoundSetter
+    public void setDeployMemoWindowMinutes(int deployMemoWindowMinutes) {
+        this.deployMemoWindowMinutes = Math.max(0, deployMemoWindowMinutes);
+        save();
+    }
+
+    /** Whether exec containers need the cache root mounted, for mirrors, SSH sockets, facts or dependencies */
+    public boolean needsCacheVolume() {
+        return gitMirrors
+                || sshControlPersistSeconds > 0
+                || factCacheTimeoutSeconds > 0
+                || maxDependencySetsPerNode > 0;
+    }
+
     // Utility methods
     public AnsibleProject getProjectById(String projectId) {
         return getProjects().stream()
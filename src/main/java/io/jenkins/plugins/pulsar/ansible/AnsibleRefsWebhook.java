@@ -0,0 +1,102 @@
+package io.jenkins.plugins.pulsar.ansible;
+
+import hudson.Extension;
+import hudson.model.UnprotectedRootAction;
+import hudson.security.csrf.CrumbExclusion;
+import io.jenkins.plugins.pulsar.ansible.model.AnsibleProject;
+import io.jenkins.plugins.pulsar.ansible.service.GitRefCache;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.logging.Logger;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.HttpResponses;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+
+/**
+ * Webhook invalidating the cached branches and tags of Ansible project repositories after a push,
+ * e.g. a POST to {@code JENKINS_URL/pulsar-git-refs/invalidate?url=<repository>} or {@code ?project=<id>}.
+ * Only repositories of configured projects are refreshed, and the refresh runs in the background. The
+ * response is the same whether anything matched, so anonymous callers cannot probe the configuration.
+ */
+@Extension
+public class AnsibleRefsWebhook implements UnprotectedRootAction {
+    private static final Logger LOGGER = Logger.getLogger(AnsibleRefsWebhook.class.getName());
+
+    public static final String URL_NAME = "pulsar-git-refs";
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return null;
+    }
+
+    @Override
+    public String getUrlName() {
+        return URL_NAME;
+    }
+
+    @RequirePOST
+    public HttpResponse doInvalidate(@QueryParameter String url, @QueryParameter String project) {
+        if ((url == null || url.trim().isEmpty()) && (project == null || project.trim().isEmpty())) {
+            return HttpResponses.errorWithoutStack(400, "Either url or project is required");
+        }
+
+        Set<String> repositories = new LinkedHashSet<>();
+        for (AnsibleProject candidate : AnsibleProjectsGlobalConfiguration.get().getProjects()) {
+            String repository = candidate.getRepository();
+            if (repository == null || repository.trim().isEmpty()) {
+                continue;
+            }
+            boolean matchesProject = project != null && project.trim().equals(candidate.getId());
+            boolean matchesUrl = url != null && normalize(url).equals(normalize(repository));
+            if (matchesProject || matchesUrl) {
+                repositories.add(repository);
+            }
+        }
+
+        for (String repository : repositories) {
+            GitRefCache.invalidate(repository);
+        }
+
+        LOGGER.fine("Invalidated ref cache for " + repositories.size() + " repositories");
+        return HttpResponses.text("Ref refresh scheduled\n");
+    }
+
+    /** Compare repository URLs regardless of case, trailing slash and ".git" suffix */
+    private static String normalize(String url) {
+        String normalized = url.trim().toLowerCase(Locale.ROOT);
+        while (normalized.endsWith("/")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        if (normalized.endsWith(".git")) {
+            normalized = normalized.substring(0, normalized.length() - 4);
+        }
+        return normalized;
+    }
+
+    /** Let webhook senders POST without a crumb */
+    @Extension
+    public static class WebhookCrumbExclusion extends CrumbExclusion {
+        @Override
+        public boolean process(HttpServletRequest req, HttpServletResponse resp, FilterChain chain)
+                throws IOException, ServletException {
+            String pathInfo = req.getPathInfo();
+            if (pathInfo != null && pathInfo.startsWith("/" + URL_NAME + "/")) {
+                chain.doFilter(req, resp);
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package io.jenkins.plugins.pulsar.ansible.action;
+
+import hudson.model.Run;
+import io.jenkins.plugins.pulsar.ansible.model.PlaybookResult;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import jenkins.model.RunAction2;
+
+/** Per-host and per-task results of the playbooks a build ran */
+public class AnsiblePlaybookResultAction implements RunAction2, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final List<PlaybookResult> results = new ArrayList<>();
+    private transient Run<?, ?> run;
+
+    /** Add a finished playbook run to the build */
+    public static void record(Run<?, ?> run, PlaybookResult result) throws IOException {
+        // Run.save locks the run too, so the list cannot change while it is being written out
+        synchronized (run) {
+            AnsiblePlaybookResultAction action = run.getAction(AnsiblePlaybookResultAction.class);
+            if (action == null) {
+                action = new AnsiblePlaybookResultAction();
+                run.addAction(action);
+            }
+            action.add(result);
+            run.save();
+        }
+    }
+
+    private synchronized void add(PlaybookResult result) {
+        results.add(result);
+    }
+
+    public synchronized List<PlaybookResult> getResults() {
+        return new ArrayList<>(results);
+    }
+
+    public Run<?, ?> getRun() {
+        return run;
+    }
+
+    @Override
+    public void onAttached(Run<?, ?> run) {
+        this.run = run;
+    }
+
+    @Override
+    public void onLoad(Run<?, ?> run) {
+        this.run = run;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "symbol-list-outline plugin-ionicons-api";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Ansible Results";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "ansible-results";
+    }
+}
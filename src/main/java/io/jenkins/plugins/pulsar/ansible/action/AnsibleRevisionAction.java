@@ -0,0 +1,98 @@
+package io.jenkins.plugins.pulsar.ansible.action;
+
+import hudson.model.Action;
+import hudson.model.Run;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Records which commit of each Ansible project a build ran against */
+public class AnsibleRevisionAction implements Action, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final List<Revision> revisions = new ArrayList<>();
+
+    /** Add a project revision to the build, once per project and commit */
+    public static void record(Run<?, ?> run, String projectId, String repository, String ref, String commit)
+            throws IOException {
+        AnsibleRevisionAction action;
+        synchronized (run) {
+            action = run.getAction(AnsibleRevisionAction.class);
+            if (action == null) {
+                action = new AnsibleRevisionAction();
+                run.addAction(action);
+            }
+        }
+        if (action.add(new Revision(projectId, repository, ref, commit))) {
+            run.save();
+        }
+    }
+
+    private synchronized boolean add(Revision revision) {
+        for (Revision existing : revisions) {
+            if (existing.projectId.equals(revision.projectId)
+                    && String.valueOf(existing.commit).equals(String.valueOf(revision.commit))
+                    && existing.ref.equals(revision.ref)) {
+                return false;
+            }
+        }
+        return revisions.add(revision);
+    }
+
+    public synchronized List<Revision> getRevisions() {
+        return new ArrayList<>(revisions);
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Ansible Revisions";
+    }
+
+    @Override
+    public String getUrlName() {
+        return null;
+    }
+
+    /** One project checkout: the requested ref and the commit it resolved to (null if unresolved) */
+    public static class Revision implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String projectId;
+        private final String repository;
+        private final String ref;
+        private final String commit;
+
+        public Revision(String projectId, String repository, String ref, String commit) {
+            this.projectId = projectId;
+            this.repository = repository;
+            this.ref = ref;
+            this.commit = commit;
+        }
+
+        public String getProjectId() {
+            return projectId;
+        }
+
+        public String getRepository() {
+            return repository;
+        }
+
+        public String getRef() {
+            return ref;
+        }
+
+        public String getCommit() {
+            return commit;
+        }
+
+        public String getShortCommit() {
+            return commit != null && commit.length() > 12 ? commit.substring(0, 12) : commit;
+        }
+    }
+}
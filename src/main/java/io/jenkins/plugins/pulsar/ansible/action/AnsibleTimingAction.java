@@ -0,0 +1,173 @@
+package io.jenkins.plugins.pulsar.ansible.action;
+
+import hudson.model.Action;
+import hudson.model.Run;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Compact timing profile of the playbooks a build ran: role totals, the slowest tasks and regressions */
+public class AnsibleTimingAction implements Action, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final List<PlaybookTiming> playbooks = new ArrayList<>();
+
+    /** Add the profile of a finished playbook to the build */
+    public static void record(Run<?, ?> run, PlaybookTiming timing) throws IOException {
+        // Run.save locks the run too, so the list cannot change while it is being written out
+        synchronized (run) {
+            AnsibleTimingAction action = run.getAction(AnsibleTimingAction.class);
+            if (action == null) {
+                action = new AnsibleTimingAction();
+                run.addAction(action);
+            }
+            action.add(timing);
+            run.save();
+        }
+    }
+
+    private synchronized void add(PlaybookTiming timing) {
+        playbooks.add(timing);
+    }
+
+    public synchronized List<PlaybookTiming> getPlaybooks() {
+        return new ArrayList<>(playbooks);
+    }
+
+    public synchronized boolean hasRegressions() {
+        return playbooks.stream().anyMatch(playbook -> !playbook.regressions.isEmpty());
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Ansible Timing";
+    }
+
+    @Override
+    public String getUrlName() {
+        return null;
+    }
+
+    public static class PlaybookTiming implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String playbook;
+        private final String envName;
+        private final long durationMillis;
+        private final Map<String, Long> roles;
+        private final List<TaskTiming> slowestTasks;
+        private final List<Regression> regressions;
+
+        public PlaybookTiming(
+                String playbook,
+                String envName,
+                long durationMillis,
+                Map<String, Long> roles,
+                List<TaskTiming> slowestTasks,
+                List<Regression> regressions) {
+            this.playbook = playbook;
+            this.envName = envName;
+            this.durationMillis = durationMillis;
+            this.roles = new LinkedHashMap<>(roles);
+            this.slowestTasks = new ArrayList<>(slowestTasks);
+            this.regressions = new ArrayList<>(regressions);
+        }
+
+        public String getPlaybook() {
+            return playbook;
+        }
+
+        public String getEnvName() {
+            return envName;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        /** Role name to the summed wall time of its tasks, slowest first */
+        public Map<String, Long> getRoles() {
+            return roles;
+        }
+
+        public List<TaskTiming> getSlowestTasks() {
+            return slowestTasks;
+        }
+
+        public List<Regression> getRegressions() {
+            return regressions;
+        }
+
+        public boolean isRegressed(String kind, String name) {
+            return regressions.stream().anyMatch(r -> r.kind.equals(kind) && r.name.equals(name));
+        }
+    }
+
+    public static class TaskTiming implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+        private final String role;
+        private final long millis;
+
+        public TaskTiming(String name, String role, long millis) {
+            this.name = name;
+            this.role = role;
+            this.millis = millis;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getRole() {
+            return role;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+    }
+
+    /** A task or role slower than its baseline median by more than the configured threshold */
+    public static class Regression implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String kind;
+        private final String name;
+        private final long millis;
+        private final long baselineMillis;
+
+        public Regression(String kind, String name, long millis, long baselineMillis) {
+            this.kind = kind;
+            this.name = name;
+            this.millis = millis;
+            this.baselineMillis = baselineMillis;
+        }
+
+        /** "task" or "role" */
+        public String getKind() {
+            return kind;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        public long getBaselineMillis() {
+            return baselineMillis;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package io.jenkins.plugins.pulsar.ansible.action;
+
+import hudson.Extension;
+import hudson.model.Action;
+import hudson.model.Job;
+import hudson.model.Run;
+import io.jenkins.plugins.pulsar.ansible.action.AnsibleTimingAction.PlaybookTiming;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import jenkins.model.TransientActionFactory;
+
+/** Job page view of role durations across recent builds, per playbook, with regressions marked */
+public class AnsibleTimingTrendAction implements Action {
+    private static final int MAX_BUILDS = 20;
+    private static final int MAX_ROLES = 8;
+
+    private final Job<?, ?> job;
+
+    public AnsibleTimingTrendAction(Job<?, ?> job) {
+        this.job = job;
+    }
+
+    public Job<?, ?> getJob() {
+        return job;
+    }
+
+    /** One trend table per playbook, newest build first */
+    public List<Trend> getTrends() {
+        Map<String, Trend> trends = new LinkedHashMap<>();
+        for (Run<?, ?> run : job.getBuilds().limit(MAX_BUILDS)) {
+            AnsibleTimingAction action = run.getAction(AnsibleTimingAction.class);
+            if (action == null) {
+                continue;
+            }
+            for (PlaybookTiming timing : action.getPlaybooks()) {
+                // Columns are the slowest roles of the newest build running the playbook
+                Trend trend = trends.computeIfAbsent(timing.getPlaybook(), k -> new Trend(k, timing));
+                trend.rows.add(new Row(run, timing, trend.roles));
+            }
+        }
+        return new ArrayList<>(trends.values());
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "symbol-timer-outline plugin-ionicons-api";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Ansible Timing Trend";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "ansible-timing";
+    }
+
+    public static class Trend {
+        private final String playbook;
+        private final List<String> roles = new ArrayList<>();
+        private final List<Row> rows = new ArrayList<>();
+
+        Trend(String playbook, PlaybookTiming newest) {
+            this.playbook = playbook;
+            newest.getRoles().keySet().stream().limit(MAX_ROLES).forEach(roles::add);
+        }
+
+        public String getPlaybook() {
+            return playbook;
+        }
+
+        public List<String> getRoles() {
+            return roles;
+        }
+
+        public List<Row> getRows() {
+            return rows;
+        }
+    }
+
+    public static class Row {
+        private final Run<?, ?> run;
+        private final String envName;
+        private final long durationMillis;
+        private final List<Cell> cells = new ArrayList<>();
+        private final int regressions;
+
+        Row(Run<?, ?> run, PlaybookTiming timing, List<String> roles) {
+            this.run = run;
+            this.envName = timing.getEnvName();
+            this.durationMillis = timing.getDurationMillis();
+            for (String role : roles) {
+                cells.add(new Cell(timing.getRoles().get(role), timing.isRegressed("role", role)));
+            }
+            this.regressions = timing.getRegressions().size();
+        }
+
+        public Run<?, ?> getRun() {
+            return run;
+        }
+
+        public String getEnvName() {
+            return envName;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        public List<Cell> getCells() {
+            return cells;
+        }
+
+        public int getRegressions() {
+            return regressions;
+        }
+    }
+
+    public static class Cell {
+        private final Long millis;
+        private final boolean regressed;
+
+        Cell(Long millis, boolean regressed) {
+            this.millis = millis;
+            this.regressed = regressed;
+        }
+
+        /** Duration of the role in the build, null when the build did not run it */
+        public Long getMillis() {
+            return millis;
+        }
+
+        public boolean isRegressed() {
+            return regressed;
+        }
+    }
+
+    /** Adds the trend to jobs whose last build recorded Ansible timings */
+    @Extension
+    public static class Factory extends TransientActionFactory<Job> {
+        @Override
+        public Class<Job> type() {
+            return Job.class;
+        }
+
+        @Override
+        public Collection<? extends Action> createFor(Job target) {
+            Run<?, ?> last = target.getLastBuild();
+            if (last == null || last.getAction(AnsibleTimingAction.class) == null) {
+                return Collections.emptyList();
+            }
+            return Collections.singletonList(new AnsibleTimingTrendAction(target));
+        }
+    }
+}
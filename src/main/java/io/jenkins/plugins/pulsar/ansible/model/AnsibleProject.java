@@ -18,9 +18,14 @@ public class AnsibleProject implements Describable<AnsibleProject>, Serializable
     private final String id;
     private final String repository;
     private String execEnv;
+    private String execEnvDigest;
     private String azureCredentialId;
     private String defaultBranch;
     private String ansibleConfig;
+    private boolean snapshotCache;
+    private int cloneDepth;
+    private String cloneFilter;
+    private List<String> sparsePaths;
     private List<AnsibleVault> vaults;
     private List<AnsibleEnvGroupConfig> envGroups;
 
@@ -47,6 +52,19 @@ public class AnsibleProject implements Describable<AnsibleProject>, Serializable
         return execEnv;
     }
 
+    public String getExecEnvDigest() {
+        return execEnvDigest;
+    }
+
+    /** Get the exec environment image reference, pinned to its digest when one is configured */
+    public String getExecEnvImage() {
+        if (execEnv == null || execEnvDigest == null || execEnvDigest.trim().isEmpty()) {
+            return execEnv;
+        }
+        String digest = execEnvDigest.trim();
+        return execEnv + "@" + (digest.contains(":") ? digest : "sha256:" + digest);
+    }
+
     public String getAzureCredentialId() {
         return azureCredentialId;
     }
@@ -64,6 +82,104 @@ public class AnsibleProject implements Describable<AnsibleProject>, Serializable
         this.ansibleConfig = ansibleConfig;
     }
 
+    /** Start new contexts from a local image snapshot of the prepared environment for the same commit */
+    public boolean isSnapshotCache() {
+        return snapshotCache;
+    }
+
+    @DataBoundSetter
+    public void setSnapshotCache(boolean snapshotCache) {
+        this.snapshotCache = snapshotCache;
+    }
+
+    /** Clone only the last N commits, 0 for full history */
+    public int getCloneDepth() {
+        return cloneDepth;
+    }
+
+    @DataBoundSetter
+    public void setCloneDepth(int cloneDepth) {
+        this.cloneDepth = Math.max(0, cloneDepth);
+    }
+
+    /** Partial clone filter, e.g. "blob:none" */
+    public String getCloneFilter() {
+        return cloneFilter != null && !cloneFilter.trim().isEmpty() ? cloneFilter.trim() : null;
+    }
+
+    @DataBoundSetter
+    public void setCloneFilter(String cloneFilter) {
+        this.cloneFilter = cloneFilter;
+    }
+
+    /** Directories (or files) to check out besides the top-level files, empty for a full checkout */
+    public List<String> getSparsePaths() {
+        return sparsePaths != null ? sparsePaths : new ArrayList<>();
+    }
+
+    @DataBoundSetter
+    public void setSparsePaths(List<String> sparsePaths) {
+        this.sparsePaths = sparsePaths != null ? sparsePaths : new ArrayList<>();
+    }
+
+    /**
+     * Sparse checkout patterns (gitignore syntax): top-level files, the configured paths and the
+     * inventory directories of all environment groups. Empty when sparse checkout is off.
+     */
+    public List<String> getSparseCheckoutPatterns() {
+        List<String> paths = new ArrayList<>();
+        for (String path : getSparsePaths()) {
+            String normalized = normalizePath(path);
+            if (!normalized.isEmpty()) {
+                paths.add(normalized);
+            }
+        }
+        if (paths.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // Inventories are needed whatever the playbook, only the static part of the template is known here
+        boolean includeAllDirs = false;
+        for (AnsibleEnvGroupConfig envGroup : getEnvGroups()) {
+            String template = envGroup.getInventoryPathTemplate();
+            if (template == null || template.trim().isEmpty()) {
+                continue;
+            }
+            int placeholder = template.indexOf("{{");
+            String staticPart = placeholder >= 0 ? template.substring(0, placeholder) : template;
+            if (placeholder >= 0) {
+                staticPart = staticPart.substring(0, staticPart.lastIndexOf('/') + 1);
+            }
+            String inventory = normalizePath(staticPart);
+            if (inventory.isEmpty()) {
+                includeAllDirs = true;
+            } else if (!paths.contains(inventory)) {
+                paths.add(inventory);
+            }
+        }
+
+        List<String> patterns = new ArrayList<>();
+        patterns.add("/*");
+        if (!includeAllDirs) {
+            patterns.add("!/*/");
+        }
+        for (String path : paths) {
+            patterns.add("/" + path);
+        }
+        return patterns;
+    }
+
+    private static String normalizePath(String path) {
+        String normalized = path != null ? path.trim() : "";
+        while (normalized.startsWith("./") || normalized.startsWith("/")) {
+            normalized = normalized.substring(normalized.startsWith("./") ? 2 : 1);
+        }
+        while (normalized.endsWith("/")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        return normalized;
+    }
+
     private String getDefaultAnsibleConfig() {
         return """
                [defaults]
@@ -95,6 +211,11 @@ public class AnsibleProject implements Describable<AnsibleProject>, Serializable
         this.execEnv = execEnv;
     }
 
+    @DataBoundSetter
+    public void setExecEnvDigest(String execEnvDigest) {
+        this.execEnvDigest = execEnvDigest;
+    }
+
     @DataBoundSetter
     public void setAzureCredentialId(String azureCredentialId) {
         this.azureCredentialId = azureCredentialId;
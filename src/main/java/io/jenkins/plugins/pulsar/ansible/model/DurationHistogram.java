@@ -0,0 +1,62 @@
+package io.jenkins.plugins.pulsar.ansible.model;
+
+import java.io.Serializable;
+
+/**
+ * Fixed-size histogram of durations with power-of-two millisecond buckets, from under 1 ms to about 12
+ * days. Counts are halved once they pass a limit, so older builds fade out and the histogram tracks a
+ * rolling baseline in constant space.
+ */
+public class DurationHistogram implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final int BUCKETS = 31;
+    // Total count at which all buckets are halved
+    private static final int DECAY_AT = 64;
+
+    private final int[] counts = new int[BUCKETS];
+    private int total;
+
+    public synchronized void add(long millis) {
+        counts[bucket(millis)]++;
+        total++;
+        if (total >= DECAY_AT) {
+            total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] /= 2;
+                total += counts[i];
+            }
+        }
+    }
+
+    public synchronized int getCount() {
+        return total;
+    }
+
+    /** Upper bound of the bucket holding the given quantile, e.g. 0.5 for the median; 0 when empty */
+    public synchronized long quantile(double quantile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= Math.max(1, rank)) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    private static int bucket(long millis) {
+        if (millis <= 0) {
+            return 0;
+        }
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(millis));
+    }
+
+    private static long upperBound(int bucket) {
+        return (1L << bucket) - 1;
+    }
+}
@@ -0,0 +1,499 @@
+package io.jenkins.plugins.pulsar.ansible.model;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Per-host and per-task outcome of one playbook run, built from the events streamed while it runs.
+ * Memory stays bounded: hosts and tasks keep counters only, plus the last few events of each host.
+ */
+public class PlaybookResult implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // Tasks are keyed by play and name; loops over generated task names stop adding entries here
+    private static final int MAX_TASKS = 1000;
+
+    private final String playbook;
+    private final String envName;
+    private final int maxEventsPerHost;
+    private final long startedAt = System.currentTimeMillis();
+    private long durationMillis;
+    private int exitCode = -1;
+    private final Map<String, HostResult> hosts = new TreeMap<>();
+    private final Map<String, TaskResult> tasks = new LinkedHashMap<>();
+    private final List<Attempt> attempts = new ArrayList<>();
+    // Set when the run matched a recent successful one and was skipped or only checked
+    private boolean skipped;
+    private boolean checkOnly;
+    private String memoReason;
+
+    public PlaybookResult(String playbook, String envName, int maxEventsPerHost) {
+        this.playbook = playbook;
+        this.envName = envName;
+        this.maxEventsPerHost = Math.max(0, maxEventsPerHost);
+    }
+
+    /** Count one task result, called from the stream parser as events arrive */
+    public synchronized void record(TaskEvent event) {
+        hosts.computeIfAbsent(event.getHost(), HostResult::new).record(event, maxEventsPerHost);
+
+        String taskKey = event.getPlay() + "\u0000" + event.getTask();
+        TaskResult task = tasks.get(taskKey);
+        if (task == null && tasks.size() < MAX_TASKS) {
+            task = new TaskResult(event.getPlay(), event.getTask(), event.getRole());
+            tasks.put(taskKey, task);
+        }
+        if (task != null) {
+            task.record(event);
+        }
+    }
+
+    /** Mark the run finished with the exit code of its last ansible-playbook attempt */
+    public synchronized void finish(int exitCode) {
+        this.exitCode = exitCode;
+        this.durationMillis = System.currentTimeMillis() - startedAt;
+    }
+
+    /** Empty result for a retry of this playbook, to be merged back with {@link #mergeRetry} */
+    public PlaybookResult newRetry() {
+        return new PlaybookResult(playbook, envName, maxEventsPerHost);
+    }
+
+    /**
+     * Take over the outcome of a retry: hosts it ran get the retry's counters and events, so each host
+     * reflects its last attempt. Task counters add up over all attempts.
+     */
+    public synchronized void mergeRetry(PlaybookResult retry) {
+        synchronized (retry) {
+            hosts.putAll(retry.hosts);
+            for (Map.Entry<String, TaskResult> entry : retry.tasks.entrySet()) {
+                TaskResult task = tasks.get(entry.getKey());
+                if (task == null && tasks.size() < MAX_TASKS) {
+                    tasks.put(entry.getKey(), entry.getValue());
+                } else if (task != null) {
+                    task.merge(entry.getValue());
+                }
+            }
+        }
+    }
+
+    /** Record one ansible-playbook attempt; hosts is null when it ran against the whole inventory */
+    public synchronized void addAttempt(List<String> hosts, int exitCode, long durationMillis) {
+        attempts.add(new Attempt(attempts.size() + 1, hosts, exitCode, durationMillis, getFailedHosts().size()));
+    }
+
+    /** Hosts whose last result was failed or unreachable */
+    public synchronized List<String> getFailedHosts() {
+        List<String> failed = new ArrayList<>();
+        for (HostResult host : hosts.values()) {
+            if (host.isFailed()) {
+                failed.add(host.host);
+            }
+        }
+        return failed;
+    }
+
+    /** Mark the run as a repeat of a recent successful one, skipped entirely or run in check mode only */
+    public synchronized void markUnchanged(boolean checkOnly, String reason) {
+        this.skipped = !checkOnly;
+        this.checkOnly = checkOnly;
+        this.memoReason = reason;
+    }
+
+    public synchronized boolean isSkipped() {
+        return skipped;
+    }
+
+    public synchronized boolean isCheckOnly() {
+        return checkOnly;
+    }
+
+    public synchronized String getMemoReason() {
+        return memoReason;
+    }
+
+    /** Sum of changed results over all hosts, in check mode the changes the run would have made */
+    public synchronized int getChangedCount() {
+        return hosts.values().stream().mapToInt(host -> host.counters.getChanged()).sum();
+    }
+
+    public synchronized List<Attempt> getAttempts() {
+        return new ArrayList<>(attempts);
+    }
+
+    public String getPlaybook() {
+        return playbook;
+    }
+
+    public String getEnvName() {
+        return envName;
+    }
+
+    public synchronized int getExitCode() {
+        return exitCode;
+    }
+
+    public synchronized long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public synchronized List<HostResult> getHosts() {
+        return new ArrayList<>(hosts.values());
+    }
+
+    public synchronized List<TaskResult> getTasks() {
+        return new ArrayList<>(tasks.values());
+    }
+
+    public synchronized boolean hasFailures() {
+        return hosts.values().stream().anyMatch(HostResult::isFailed);
+    }
+
+    /** Plain maps and lists for pipeline scripts, which cannot call methods of plugin classes */
+    public synchronized Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("playbook", playbook);
+        map.put("envName", envName);
+        map.put("exitCode", exitCode);
+        map.put("durationMillis", durationMillis);
+        map.put("skipped", skipped);
+        map.put("checkOnly", checkOnly);
+        if (memoReason != null) {
+            map.put("memoReason", memoReason);
+        }
+
+        Map<String, Object> hostMap = new LinkedHashMap<>();
+        for (HostResult host : hosts.values()) {
+            Map<String, Object> entry = host.counters.toMap();
+            List<Map<String, Object>> events = new ArrayList<>();
+            for (TaskEvent event : host.lastEvents) {
+                events.add(event.toMap());
+            }
+            entry.put("lastEvents", events);
+            hostMap.put(host.host, entry);
+        }
+        map.put("hosts", hostMap);
+
+        List<Map<String, Object>> taskList = new ArrayList<>();
+        for (TaskResult task : tasks.values()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("play", task.play);
+            entry.put("task", task.name);
+            entry.put("role", task.role);
+            entry.putAll(task.counters.toMap());
+            entry.put("maxDurationMillis", task.maxDurationMillis);
+            taskList.add(entry);
+        }
+        map.put("tasks", taskList);
+
+        List<Map<String, Object>> attemptList = new ArrayList<>();
+        for (Attempt attempt : attempts) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("attempt", attempt.number);
+            entry.put("hosts", attempt.hosts != null ? new ArrayList<>(attempt.hosts) : "all");
+            entry.put("exitCode", attempt.exitCode);
+            entry.put("durationMillis", attempt.durationMillis);
+            entry.put("failedHosts", attempt.failedHosts);
+            attemptList.add(entry);
+        }
+        map.put("attempts", attemptList);
+        return map;
+    }
+
+    /** ok/changed/failed/unreachable/skipped/ignored counts with their summed duration */
+    public static class Counters implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private int ok;
+        private int changed;
+        private int failed;
+        private int unreachable;
+        private int skipped;
+        private int ignored;
+        private long durationMillis;
+
+        void record(TaskEvent event) {
+            switch (event.getStatus()) {
+                case TaskEvent.OK -> ok++;
+                case TaskEvent.FAILED -> failed++;
+                case TaskEvent.UNREACHABLE -> unreachable++;
+                case TaskEvent.SKIPPED -> skipped++;
+                case TaskEvent.IGNORED -> ignored++;
+                default -> {}
+            }
+            // As in the PLAY RECAP, a changed result also counts as ok
+            if (event.isChanged() && TaskEvent.OK.equals(event.getStatus())) {
+                changed++;
+            }
+            durationMillis += event.getDurationMillis();
+        }
+
+        void merge(Counters other) {
+            ok += other.ok;
+            changed += other.changed;
+            failed += other.failed;
+            unreachable += other.unreachable;
+            skipped += other.skipped;
+            ignored += other.ignored;
+            durationMillis += other.durationMillis;
+        }
+
+        public int getOk() {
+            return ok;
+        }
+
+        public int getChanged() {
+            return changed;
+        }
+
+        public int getFailed() {
+            return failed;
+        }
+
+        public int getUnreachable() {
+            return unreachable;
+        }
+
+        public int getSkipped() {
+            return skipped;
+        }
+
+        public int getIgnored() {
+            return ignored;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("ok", ok);
+            map.put("changed", changed);
+            map.put("failed", failed);
+            map.put("unreachable", unreachable);
+            map.put("skipped", skipped);
+            map.put("ignored", ignored);
+            map.put("durationMillis", durationMillis);
+            return map;
+        }
+    }
+
+    public static class HostResult implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String host;
+        private final Counters counters = new Counters();
+        private final Deque<TaskEvent> lastEvents = new ArrayDeque<>();
+
+        HostResult(String host) {
+            this.host = host;
+        }
+
+        void record(TaskEvent event, int maxEvents) {
+            counters.record(event);
+            if (maxEvents > 0) {
+                if (lastEvents.size() >= maxEvents) {
+                    lastEvents.removeFirst();
+                }
+                lastEvents.addLast(event);
+            }
+        }
+
+        public String getHost() {
+            return host;
+        }
+
+        public Counters getCounters() {
+            return counters;
+        }
+
+        public List<TaskEvent> getLastEvents() {
+            return new ArrayList<>(lastEvents);
+        }
+
+        public boolean isFailed() {
+            return counters.failed > 0 || counters.unreachable > 0;
+        }
+    }
+
+    public static class TaskResult implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String play;
+        private final String name;
+        private final String role;
+        private final Counters counters = new Counters();
+        private long maxDurationMillis;
+
+        TaskResult(String play, String name, String role) {
+            this.play = play;
+            this.name = name;
+            this.role = role;
+        }
+
+        void record(TaskEvent event) {
+            counters.record(event);
+            maxDurationMillis = Math.max(maxDurationMillis, event.getDurationMillis());
+        }
+
+        void merge(TaskResult other) {
+            counters.merge(other.counters);
+            maxDurationMillis = Math.max(maxDurationMillis, other.maxDurationMillis);
+        }
+
+        public String getPlay() {
+            return play;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getRole() {
+            return role;
+        }
+
+        public Counters getCounters() {
+            return counters;
+        }
+
+        /** Duration on the slowest host, about the wall time the task took with hosts running in parallel */
+        public long getMaxDurationMillis() {
+            return maxDurationMillis;
+        }
+    }
+
+    /** One ansible-playbook invocation of a run with retries */
+    public static class Attempt implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final int number;
+        private final List<String> hosts;
+        private final int exitCode;
+        private final long durationMillis;
+        private final int failedHosts;
+
+        Attempt(int number, List<String> hosts, int exitCode, long durationMillis, int failedHosts) {
+            this.number = number;
+            this.hosts = hosts != null ? new ArrayList<>(hosts) : null;
+            this.exitCode = exitCode;
+            this.durationMillis = durationMillis;
+            this.failedHosts = failedHosts;
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        /** Hosts the attempt was limited to, null for the whole inventory */
+        public List<String> getHosts() {
+            return hosts;
+        }
+
+        public int getExitCode() {
+            return exitCode;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        /** Hosts still failed or unreachable after this attempt */
+        public int getFailedHosts() {
+            return failedHosts;
+        }
+    }
+
+    /** One task result on one host */
+    public static class TaskEvent implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        public static final String OK = "ok";
+        public static final String FAILED = "failed";
+        public static final String UNREACHABLE = "unreachable";
+        public static final String SKIPPED = "skipped";
+        public static final String IGNORED = "ignored";
+
+        private final String play;
+        private final String task;
+        private final String role;
+        private final String host;
+        private final String status;
+        private final boolean changed;
+        private final long durationMillis;
+        private final String message;
+
+        public TaskEvent(
+                String play,
+                String task,
+                String role,
+                String host,
+                String status,
+                boolean changed,
+                long durationMillis,
+                String message) {
+            this.play = play;
+            this.task = task;
+            this.role = role;
+            this.host = host;
+            this.status = status;
+            this.changed = changed;
+            this.durationMillis = durationMillis;
+            this.message = message;
+        }
+
+        public String getPlay() {
+            return play;
+        }
+
+        public String getTask() {
+            return task;
+        }
+
+        /** Role the task belongs to, null for tasks of the playbook itself */
+        public String getRole() {
+            return role;
+        }
+
+        public String getHost() {
+            return host;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public boolean isChanged() {
+            return changed;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("play", play);
+            map.put("task", task);
+            map.put("role", role);
+            map.put("status", status);
+            map.put("changed", changed);
+            map.put("durationMillis", durationMillis);
+            if (message != null && !message.isEmpty()) {
+                map.put("message", message);
+            }
+            return map;
+        }
+    }
+}
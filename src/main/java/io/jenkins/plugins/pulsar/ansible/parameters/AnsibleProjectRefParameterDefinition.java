@@ -6,14 +6,12 @@ import hudson.model.ParameterValue;
 import hudson.model.StringParameterValue;
 import io.jenkins.plugins.pulsar.ansible.AnsibleProjectsGlobalConfiguration;
 import io.jenkins.plugins.pulsar.ansible.model.AnsibleProject;
+import io.jenkins.plugins.pulsar.ansible.service.GitRefCache;
 import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import net.sf.json.JSONObject;
-import org.eclipse.jgit.lib.ObjectId;
 import org.jenkinsci.Symbol;
-import org.jenkinsci.plugins.gitclient.Git;
-import org.jenkinsci.plugins.gitclient.GitClient;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.StaplerRequest2;
@@ -22,6 +20,7 @@ public class AnsibleProjectRefParameterDefinition extends ParameterDefinition {
     private static final Logger LOGGER = Logger.getLogger(AnsibleProjectRefParameterDefinition.class.getName());
 
     private String projectId;
+    private boolean includeTags = false;
 
     @DataBoundConstructor
     public AnsibleProjectRefParameterDefinition(String name, String description, String projectId) {
@@ -39,9 +38,19 @@ public class AnsibleProjectRefParameterDefinition extends ParameterDefinition {
         this.projectId = projectId;
     }
 
+    public boolean isIncludeTags() {
+        return includeTags;
+    }
+
+    /** Also offer tags, as "tags/<name>" */
+    @DataBoundSetter
+    public void setIncludeTags(boolean includeTags) {
+        this.includeTags = includeTags;
+    }
+
     public List<String> getChoices() {
         try {
-            LOGGER.log(Level.INFO, "Fetching branches for project: {0}", projectId);
+            LOGGER.log(Level.FINE, "Fetching branches for project: {0}", projectId);
 
             // Get the ansible project
             AnsibleProjectsGlobalConfiguration config = AnsibleProjectsGlobalConfiguration.get();
@@ -58,20 +67,16 @@ public class AnsibleProjectRefParameterDefinition extends ParameterDefinition {
                 return Arrays.asList("No repository configured");
             }
 
-            LOGGER.log(Level.INFO, "Getting branches from: {0}", repoUrl);
-
-            // Get branches using Git client
-            List<String> branches = new ArrayList<>();
-            GitClient gitClient = Git.with(null, null).getClient();
-            Map<String, ObjectId> refs = gitClient.getRemoteReferences(repoUrl, null, true, false);
-
-            for (String ref : refs.keySet()) {
-                if (ref.startsWith("refs/heads/")) {
-                    branches.add(ref.substring("refs/heads/".length()));
+            // Served from the ref cache, only the first render per repository waits for git ls-remote
+            GitRefCache.RemoteRefs refs = GitRefCache.get(repoUrl);
+            List<String> branches = new ArrayList<>(refs.getBranches());
+            if (includeTags) {
+                for (String tag : refs.getTags()) {
+                    branches.add("tags/" + tag);
                 }
             }
 
-            LOGGER.log(Level.INFO, "Found {0} branches", branches.size());
+            LOGGER.log(Level.FINE, "Found {0} refs", branches.size());
             return branches;
 
         } catch (Exception e) {
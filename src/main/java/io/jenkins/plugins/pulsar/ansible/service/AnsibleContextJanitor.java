@@ -0,0 +1,229 @@
+package io.jenkins.plugins.pulsar.ansible.service;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.Launcher;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Computer;
+import hudson.model.TaskListener;
+import hudson.util.LogTaskListener;
+import io.jenkins.plugins.pulsar.ansible.AnsibleProjectsGlobalConfiguration;
+import io.jenkins.plugins.pulsar.ansible.steps.AnsibleContext;
+import io.jenkins.plugins.pulsar.container.service.ContainerManager;
+import io.jenkins.plugins.pulsar.shared.LaunchHelper;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the Ansible context registry bounded per node. Contexts no build holds are evicted, least
+ * recently used first, when they exceed the idle TTL, when the node has more than the allowed number
+ * of contexts, or while free disk space or inodes in their exec container are below the threshold.
+ * Eviction deletes the checkout directory; the shared container keeps running.
+ */
+@Extension
+public class AnsibleContextJanitor extends AsyncPeriodicWork {
+    private static final Logger LOGGER = Logger.getLogger(AnsibleContextJanitor.class.getName());
+
+    private static final long TICK_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final Set<String> runningNodes = ConcurrentHashMap.newKeySet();
+
+    public AnsibleContextJanitor() {
+        super("Ansible context eviction");
+    }
+
+    public static AnsibleContextJanitor get() {
+        return ExtensionList.lookupSingleton(AnsibleContextJanitor.class);
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return TICK_MILLIS;
+    }
+
+    @Override
+    protected void execute(TaskListener listener) {
+        Set<String> nodes = new LinkedHashSet<>();
+        for (AnsibleContext context : AnsibleContext.getActiveContexts()) {
+            nodes.add(context.getNodeName());
+        }
+        for (String nodeName : nodes) {
+            checkNode(nodeName);
+        }
+    }
+
+    /** Schedule an eviction pass for one node, skipped if one is already running there */
+    public void checkNode(String nodeName) {
+        if (!runningNodes.add(nodeName)) {
+            return;
+        }
+
+        Computer.threadPoolForRemoting.submit(() -> {
+            try {
+                Computer computer = LaunchHelper.getComputer(nodeName);
+                TaskListener listener = new LogTaskListener(LOGGER, Level.FINE);
+                Launcher launcher = computer != null ? LaunchHelper.getLauncher(computer, listener) : null;
+                if (launcher != null) {
+                    evict(nodeName, launcher, listener);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Ansible context eviction failed on node " + nodeName, e);
+            } finally {
+                runningNodes.remove(nodeName);
+            }
+        });
+    }
+
+    private void evict(String nodeName, Launcher launcher, TaskListener listener) throws InterruptedException {
+        AnsibleProjectsGlobalConfiguration config = AnsibleProjectsGlobalConfiguration.get();
+
+        List<AnsibleContext> contexts = new ArrayList<>();
+        for (AnsibleContext context : AnsibleContext.getActiveContexts()) {
+            if (!context.isKilled() && nodeName.equals(context.getNodeName())) {
+                contexts.add(context);
+            }
+        }
+        contexts.sort(Comparator.comparingLong(AnsibleContext::getLastUsed));
+
+        // 1. Idle TTL
+        long ttl = TimeUnit.MINUTES.toMillis(config.getContextIdleTtlMinutes());
+        long now = System.currentTimeMillis();
+        if (ttl > 0) {
+            for (AnsibleContext context : new ArrayList<>(contexts)) {
+                if (now - context.getLastUsed() >= ttl && evict(context, "idle", launcher, listener)) {
+                    contexts.remove(context);
+                }
+            }
+        }
+
+        // 2. Capacity, least recently used first
+        int max = config.getMaxContextsPerNode();
+        if (max > 0) {
+            for (AnsibleContext context : new ArrayList<>(contexts)) {
+                if (contexts.size() <= max) {
+                    break;
+                }
+                if (evict(context, "capacity", launcher, listener)) {
+                    contexts.remove(context);
+                }
+            }
+        }
+
+        // 3. Disk pressure, per exec container
+        Map<ContainerManager, List<AnsibleContext>> byContainer = new LinkedHashMap<>();
+        for (AnsibleContext context : contexts) {
+            if (context.getExecEnv() != null) {
+                byContainer.computeIfAbsent(context.getExecEnv(), k -> new ArrayList<>()).add(context);
+            }
+        }
+        for (Map.Entry<ContainerManager, List<AnsibleContext>> entry : byContainer.entrySet()) {
+            relieveDiskPressure(entry.getKey(), entry.getValue(), launcher, listener);
+        }
+    }
+
+    /** Evict idle contexts of the container, least recently used first, until disk and inodes are above threshold */
+    private void relieveDiskPressure(
+            ContainerManager container, List<AnsibleContext> contexts, Launcher launcher, TaskListener listener)
+            throws InterruptedException {
+        AnsibleProjectsGlobalConfiguration config = AnsibleProjectsGlobalConfiguration.get();
+        if (config.getMinFreeDiskPercent() == 0 && config.getMinFreeInodesPercent() == 0) {
+            return;
+        }
+
+        for (AnsibleContext context : contexts) {
+            DiskUsage usage = measure(container, context.getProjectDir(), launcher, listener);
+            if (usage == null || !usage.isBelow(config.getMinFreeDiskPercent(), config.getMinFreeInodesPercent())) {
+                return;
+            }
+            evict(context, "disk pressure (" + usage + ")", launcher, listener);
+        }
+    }
+
+    private static boolean evict(AnsibleContext context, String reason, Launcher launcher, TaskListener listener) {
+        if (!context.evictIfIdle(launcher, listener)) {
+            return false;
+        }
+        LOGGER.info("Evicted Ansible context " + context.getProjectId() + "@" + context.getRef() + " on node "
+                + context.getNodeName() + ": " + reason);
+        return true;
+    }
+
+    /** Free space and inodes of the filesystem holding the checkout, null when they cannot be read */
+    private static DiskUsage measure(
+            ContainerManager container, String path, Launcher launcher, TaskListener listener)
+            throws InterruptedException {
+        // The checkout may be gone already, measure its parent in that case
+        String cmd = "d=" + path + "; [ -d \"$d\" ] || d=$(dirname \"$d\"); "
+                + "df -P \"$d\" | tail -n 1; df -Pi \"$d\" | tail -n 1";
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            if (container.execute(cmd, null, null, null, output, launcher, listener) != 0) {
+                return null;
+            }
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Failed to measure disk usage in container " + container.getContainerId(), e);
+            return null;
+        }
+        return DiskUsage.parse(output.toString(StandardCharsets.UTF_8));
+    }
+
+    /** Free shares of the filesystem blocks and inodes as reported by df -P and df -Pi */
+    static class DiskUsage {
+        private final double freeDiskPercent;
+        private final double freeInodesPercent;
+
+        DiskUsage(double freeDiskPercent, double freeInodesPercent) {
+            this.freeDiskPercent = freeDiskPercent;
+            this.freeInodesPercent = freeInodesPercent;
+        }
+
+        /** Parse the df lines for blocks, then inodes; filesystems without inode counts count as 100% free */
+        static DiskUsage parse(String output) {
+            String[] lines = output.trim().split("\n");
+            if (lines.length < 2) {
+                return null;
+            }
+            double disk = freePercent(lines[lines.length - 2]);
+            double inodes = freePercent(lines[lines.length - 1]);
+            return disk < 0 ? null : new DiskUsage(disk, inodes < 0 ? 100 : inodes);
+        }
+
+        private static double freePercent(String line) {
+            String[] fields = line.trim().split("\\s+");
+            if (fields.length < 4) {
+                return -1;
+            }
+            try {
+                long used = Long.parseLong(fields[2]);
+                long available = Long.parseLong(fields[3]);
+                return used + available > 0 ? 100.0 * available / (used + available) : -1;
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        boolean isBelow(int minFreeDiskPercent, int minFreeInodesPercent) {
+            return freeDiskPercent < minFreeDiskPercent || freeInodesPercent < minFreeInodesPercent;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.1f%% disk, %.1f%% inodes free", freeDiskPercent, freeInodesPercent);
+        }
+    }
+}
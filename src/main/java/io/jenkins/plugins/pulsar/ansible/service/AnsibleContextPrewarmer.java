@@ -0,0 +1,189 @@
+package io.jenkins.plugins.pulsar.ansible.service;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.Launcher;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Computer;
+import hudson.model.Job;
+import hudson.model.Label;
+import hudson.model.Node;
+import hudson.model.ParametersAction;
+import hudson.model.Queue;
+import hudson.model.TaskListener;
+import hudson.model.queue.QueueListener;
+import hudson.util.LogTaskListener;
+import io.jenkins.plugins.pulsar.ansible.AnsibleProjectsGlobalConfiguration;
+import io.jenkins.plugins.pulsar.ansible.steps.AnsibleContext;
+import io.jenkins.plugins.pulsar.deployment.DeploymentJobManager;
+import io.jenkins.plugins.pulsar.deployment.model.DeploymentTarget;
+import io.jenkins.plugins.pulsar.shared.LaunchHelper;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+
+/**
+ * Speculatively prepares the Ansible context (container, checkout, SSH agent) of a queued deployment
+ * build on the node it is likely to run on, so queue time overlaps with setup time. Bounded by a
+ * per-node budget; pre-warmed contexts no build picks up are discarded after a TTL.
+ */
+@Extension
+public class AnsibleContextPrewarmer extends AsyncPeriodicWork {
+    private static final Logger LOGGER = Logger.getLogger(AnsibleContextPrewarmer.class.getName());
+
+    private static final long TICK_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    // Queue items already considered, so waiting -> buildable transitions do not pre-warm twice
+    private final Set<Long> handledItems = ConcurrentHashMap.newKeySet();
+    // nodeName -> pre-warms in flight
+    private final Map<String, Integer> inFlight = new ConcurrentHashMap<>();
+
+    public AnsibleContextPrewarmer() {
+        super("Ansible context pre-warm cleanup");
+    }
+
+    public static AnsibleContextPrewarmer get() {
+        return ExtensionList.lookupSingleton(AnsibleContextPrewarmer.class);
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return TICK_MILLIS;
+    }
+
+    @Override
+    protected void execute(TaskListener listener) {
+        long ttl = TimeUnit.MINUTES.toMillis(AnsibleProjectsGlobalConfiguration.get().getPrewarmTtlMinutes());
+        for (AnsibleContext context : AnsibleContext.getUnusedPrewarmed(ttl)) {
+            Computer computer = LaunchHelper.getComputer(context.getNodeName());
+            Launcher launcher = computer != null ? LaunchHelper.getLauncher(computer, listener) : null;
+            if (launcher != null && context.discardIfUnused(launcher, listener)) {
+                LOGGER.fine("Discarded unused pre-warmed context " + context.getProjectId() + " on node "
+                        + context.getNodeName());
+            }
+        }
+    }
+
+    /** Pre-warm the context of a queued deployment build, if it is one and the node has budget left */
+    public void onQueued(Queue.Item item) {
+        if (!AnsibleProjectsGlobalConfiguration.get().isPrewarmEnabled()
+                || !(item.task instanceof Job<?, ?> job)
+                || !handledItems.add(item.getId())) {
+            return;
+        }
+
+        ParametersAction parameters = item.getAction(ParametersAction.class);
+        DeploymentTarget target =
+                DeploymentJobManager.resolveTarget(job, parameters != null ? parameters.getParameters() : null);
+        if (target == null) {
+            return;
+        }
+
+        Computer computer = selectNode(target);
+        if (computer == null) {
+            LOGGER.fine("No online node for " + target + ", skipping pre-warm");
+            return;
+        }
+
+        String nodeName = LaunchHelper.getNodeName(computer);
+        if (!reserve(nodeName)) {
+            LOGGER.fine("Pre-warm budget of node " + nodeName + " exhausted, skipping " + target);
+            return;
+        }
+
+        Computer.threadPoolForRemoting.submit(() -> {
+            try {
+                TaskListener listener = new LogTaskListener(LOGGER, Level.FINE);
+                Launcher launcher = LaunchHelper.getLauncher(computer, listener);
+                if (launcher == null) {
+                    return;
+                }
+                long start = System.currentTimeMillis();
+                if (AnsibleContext.prewarm(target.getProjectId(), target.getRef(), nodeName, launcher, listener)) {
+                    LOGGER.fine("Pre-warmed " + target + " on node " + nodeName + " in "
+                            + (System.currentTimeMillis() - start) + " ms");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Failed to pre-warm " + target + " on node " + nodeName, e);
+            } finally {
+                inFlight.computeIfPresent(nodeName, (k, count) -> count > 1 ? count - 1 : null);
+            }
+        });
+    }
+
+    void onLeft(Queue.LeftItem item) {
+        handledItems.remove(item.getId());
+    }
+
+    /** Take a slot of the node budget, counting pre-warms in flight and pre-warmed contexts not yet used */
+    private boolean reserve(String nodeName) {
+        int budget = AnsibleProjectsGlobalConfiguration.get().getPrewarmMaxPerNode();
+        int unused = AnsibleContext.countUnusedPrewarmed(nodeName);
+        boolean[] reserved = {false};
+        inFlight.compute(nodeName, (k, count) -> {
+            int current = count != null ? count : 0;
+            if (current + unused >= budget) {
+                return count;
+            }
+            reserved[0] = true;
+            return current + 1;
+        });
+        return reserved[0];
+    }
+
+    /** Online node serving the target environment, preferring warm nodes, then the least loaded */
+    private static Computer selectNode(DeploymentTarget target) {
+        Label label;
+        try {
+            label = Label.parseExpression(target.getNodeLabels());
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Invalid node label expression for " + target, e);
+            return null;
+        }
+
+        Computer selected = null;
+        double selectedScore = 0;
+        for (Computer computer : Jenkins.get().getComputers()) {
+            Node node = computer.getNode();
+            if (node == null
+                    || !computer.isOnline()
+                    || !computer.isAcceptingTasks()
+                    || node.getNumExecutors() == 0
+                    || !label.matches(node)) {
+                continue;
+            }
+            double score = WarmNodeLoadBalancer.warmth(LaunchHelper.getNodeName(computer), target)
+                    - WarmNodeLoadBalancer.load(computer);
+            if (selected == null || score > selectedScore) {
+                selected = computer;
+                selectedScore = score;
+            }
+        }
+        return selected;
+    }
+
+    /** Starts pre-warming as soon as a build enters the queue, while it waits for its quiet period or an executor */
+    @Extension
+    public static class QueuedBuildListener extends QueueListener {
+        @Override
+        public void onEnterWaiting(Queue.WaitingItem item) {
+            AnsibleContextPrewarmer.get().onQueued(item);
+        }
+
+        @Override
+        public void onEnterBuildable(Queue.BuildableItem item) {
+            AnsibleContextPrewarmer.get().onQueued(item);
+        }
+
+        @Override
+        public void onLeft(Queue.LeftItem item) {
+            AnsibleContextPrewarmer.get().onLeft(item);
+        }
+    }
+}
@@ -4,6 +4,7 @@ import io.jenkins.plugins.pulsar.ansible.model.AnsibleVault;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import net.sf.json.JSONObject;
 
 /**
  * Builder for ansible-playbook commands. Handles command construction with proper escaping and
@@ -16,8 +17,15 @@ public class AnsiblePlaybookCommandBuilder {
     private String inventory;
     private String projectRoot;
     private Map<String, Object> extraVars;
+    private String extraVarsFile;
     private String options;
     private VaultManager vaultManager;
+    private String limit;
+    private String eventCallbackDir;
+    private String sshControlDir;
+    private String sshArgs;
+    private String factCacheDir;
+    private String dependencyDir;
 
     public AnsiblePlaybookCommandBuilder playbook(String playbook) {
         this.playbook = playbook;
@@ -49,11 +57,69 @@ public class AnsiblePlaybookCommandBuilder {
         return this;
     }
 
+    /** Pass the extra vars as -e @file, with the file holding {@link #buildExtraVarsJson()} */
+    public AnsiblePlaybookCommandBuilder extraVarsFile(String extraVarsFile) {
+        this.extraVarsFile = extraVarsFile;
+        return this;
+    }
+
     public AnsiblePlaybookCommandBuilder options(String options) {
         this.options = options;
         return this;
     }
 
+    /** Host pattern or "@file" passed as --limit, e.g. for one shard of the inventory */
+    public AnsiblePlaybookCommandBuilder limit(String limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    /** Load the pulsar_events callback plugin from this directory so the run streams JSON-lines events */
+    public AnsiblePlaybookCommandBuilder eventCallback(String eventCallbackDir) {
+        this.eventCallbackDir = eventCallbackDir;
+        return this;
+    }
+
+    /** Keep SSH master connections in the given directory, with ssh_args replacing those of ansible.cfg */
+    public AnsiblePlaybookCommandBuilder sshControl(String sshControlDir, String sshArgs) {
+        this.sshControlDir = sshControlDir;
+        this.sshArgs = sshArgs;
+        return this;
+    }
+
+    /** Read and write cached facts in the given jsonfile directory instead of the ansible.cfg one */
+    public AnsiblePlaybookCommandBuilder factCache(String factCacheDir) {
+        this.factCacheDir = factCacheDir;
+        return this;
+    }
+
+    /** Search the collections, roles and Python packages of this dependency set first */
+    public AnsiblePlaybookCommandBuilder dependencies(String dependencyDir) {
+        this.dependencyDir = dependencyDir;
+        return this;
+    }
+
+    public boolean hasExtraVars() {
+        return extraVars != null && !extraVars.isEmpty();
+    }
+
+    /** Whether the options already restrict the hosts with --limit or -l */
+    public boolean hasLimitOption() {
+        return options != null && options.matches("(^|.*\\s)(--limit|-l)(\\s|=|$).*");
+    }
+
+    /** Build a command listing the inventory hosts matching the pattern, one per line */
+    public String buildListHostsCmd(String pattern) {
+        List<String> cmd = new ArrayList<>();
+        cmd.add("ansible '" + pattern + "' --list-hosts");
+        if (inventory != null) {
+            cmd.add("-i '" + inventory + "'");
+        }
+        addVaultIds(cmd);
+
+        return projectRoot != null ? "cd " + projectRoot + " && " + String.join(" ", cmd) : String.join(" ", cmd);
+    }
+
     /** Build the complete command including directory change */
     public String buildCmd() {
         if (playbook == null) {
@@ -64,6 +130,13 @@ public class AnsiblePlaybookCommandBuilder {
 
         commandParts.add("set -e");
 
+        if (sshControlDir != null) {
+            commandParts.add("mkdir -p -m 700 " + sshControlDir);
+        }
+        if (factCacheDir != null) {
+            commandParts.add("mkdir -p " + factCacheDir);
+        }
+
         // Change to project directory
         if (projectRoot != null) {
             commandParts.add("cd " + projectRoot);
@@ -72,7 +145,8 @@ public class AnsiblePlaybookCommandBuilder {
         // Build ansible-playbook command
         commandParts.add(buildAnsibleCommand());
 
-        return String.join(" && ", commandParts);
+        String cmd = String.join(" && ", commandParts);
+        return dependencyDir != null ? DependencyCache.buildUseCmd(dependencyDir, cmd) : cmd;
     }
 
     /** Build just the ansible-playbook command (without cd) */
@@ -83,6 +157,30 @@ public class AnsiblePlaybookCommandBuilder {
 
         List<String> cmd = new ArrayList<>();
 
+        // Event callback, in front of the plugin paths ansible searches by default
+        if (eventCallbackDir != null) {
+            cmd.add("ANSIBLE_CALLBACK_PLUGINS=" + eventCallbackDir
+                    + ":${ANSIBLE_CALLBACK_PLUGINS:-~/.ansible/plugins/callback:/usr/share/ansible/plugins/callback}");
+            cmd.add("PULSAR_EVENT_MARKER='" + PlaybookEventParser.MARKER + "'");
+        }
+
+        // Persistent SSH master connections
+        if (sshControlDir != null) {
+            cmd.add("ANSIBLE_SSH_ARGS='" + sshArgs.replace("'", "'\\''") + "'");
+            cmd.add("ANSIBLE_SSH_CONTROL_PATH_DIR='" + sshControlDir + "'");
+            cmd.add("ANSIBLE_SSH_CONTROL_PATH='" + SshControlPaths.CONTROL_PATH + "'");
+        }
+
+        // Per-environment fact cache
+        if (factCacheDir != null) {
+            cmd.add("ANSIBLE_CACHE_PLUGIN_CONNECTION='" + factCacheDir + "'");
+        }
+
+        // Cached Galaxy and Python dependencies
+        if (dependencyDir != null) {
+            cmd.addAll(DependencyCache.envAssignments(dependencyDir));
+        }
+
         // Base command
         cmd.add("ansible-playbook " + playbook);
 
@@ -95,18 +193,15 @@ public class AnsiblePlaybookCommandBuilder {
         }
 
         // Vault IDs - handle internally
-        if (vaultManager != null && vaultManager.hasVaults()) {
-            for (AnsibleVault vault : vaultManager.getSetupVaults()) {
-                String passwordFile = vaultManager.getVaultFilePath(vault);
-                cmd.add("--vault-id " + vault.getId() + "@" + passwordFile);
-            }
-        }
+        addVaultIds(cmd);
 
         // Standard extra vars
         cmd.add("-e 'running_from_jenkins=true'");
 
-        // Custom extra vars
-        if (extraVars != null) {
+        // Custom extra vars, from a JSON file keeping their types, or inline as strings
+        if (extraVarsFile != null) {
+            cmd.add("-e '@" + extraVarsFile + "'");
+        } else if (extraVars != null) {
             for (Map.Entry<String, Object> var : extraVars.entrySet()) {
                 String escapedValue = escapeValue(var.getValue().toString());
                 cmd.add("-e '" + var.getKey() + "=" + escapedValue + "'");
@@ -118,9 +213,27 @@ public class AnsiblePlaybookCommandBuilder {
             cmd.add(options.trim());
         }
 
+        if (limit != null) {
+            cmd.add("--limit '" + limit + "'");
+        }
+
         return String.join(" ", cmd);
     }
 
+    /** The extra vars as a JSON object; maps, lists, numbers and booleans keep their type */
+    public String buildExtraVarsJson() {
+        return JSONObject.fromObject(extraVars != null ? extraVars : Map.of()).toString();
+    }
+
+    private void addVaultIds(List<String> cmd) {
+        if (vaultManager != null && vaultManager.hasVaults()) {
+            for (AnsibleVault vault : vaultManager.getSetupVaults()) {
+                String passwordFile = vaultManager.getVaultFilePath(vault);
+                cmd.add("--vault-id " + vault.getId() + "@" + passwordFile);
+            }
+        }
+    }
+
     /** Get command as separate parts for easier testing/debugging */
     public List<String> buildCommandParts() {
         List<String> parts = new ArrayList<>();
@@ -0,0 +1,137 @@
+package io.jenkins.plugins.pulsar.ansible.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Galaxy collections, roles and Python packages of a project, installed once per node into a directory
+ * of the cache volume named by a hash of the requirements files and the exec environment image. Contexts
+ * whose requirements hash to an existing directory reuse it instead of installing again.
+ */
+public class DependencyCache {
+    // Galaxy requirements may list roles, collections or both; the subdirectory files hold one kind only
+    private static final String GALAXY_REQUIREMENTS = "requirements.yml";
+    private static final String COLLECTION_REQUIREMENTS = "collections/requirements.yml";
+    private static final String ROLE_REQUIREMENTS = "roles/requirements.yml";
+    private static final String PYTHON_REQUIREMENTS = "requirements.txt";
+
+    private static final List<String> REQUIREMENT_FILES =
+            List.of(GALAXY_REQUIREMENTS, COLLECTION_REQUIREMENTS, ROLE_REQUIREMENTS, PYTHON_REQUIREMENTS);
+
+    // Sets unused for less than this are kept beyond the per-node limit; sets in use are locked and never pruned
+    private static final int PRUNE_MIN_IDLE_MINUTES = 1440;
+
+    private DependencyCache() {}
+
+    /** Shell command printing the name and content of every requirements file of the project */
+    public static String buildReadRequirementsCmd(String projectDir) {
+        return "cd " + projectDir + " && for f in " + String.join(" ", REQUIREMENT_FILES)
+                + "; do if [ -f \"$f\" ]; then echo \"== $f\"; cat \"$f\"; fi; done";
+    }
+
+    /** Hash of the requirements read by {@link #buildReadRequirementsCmd}, null when the project has none */
+    public static String hash(String image, String requirements) {
+        if (requirements == null || requirements.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            // Installed packages depend on the image's Python and ansible-core as much as on the files
+            digest.update((image + "\n").getBytes(StandardCharsets.UTF_8));
+            digest.update(requirements.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest()).substring(0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static String depsRoot(String cacheRoot) {
+        return cacheRoot + "/deps";
+    }
+
+    /** Directory of a dependency set under the cache root */
+    public static String depsDir(String cacheRoot, String hash) {
+        return depsRoot(cacheRoot) + "/" + hash;
+    }
+
+    /**
+     * Shell command installing the project's requirements into the dependency directory unless a complete
+     * set is already there. Installs go to a temporary directory that is moved in place when done, under a
+     * lock so contexts on the same node do not install the same set twice.
+     */
+    public static String buildInstallCmd(String projectDir, String depsDir) {
+        String tmp = depsDir + ".tmp";
+        List<String> install = new ArrayList<>();
+        install.add("rm -rf " + tmp);
+        install.add("mkdir -p " + tmp);
+        install.add("if grep -q '^collections:' " + GALAXY_REQUIREMENTS + " 2>/dev/null; then "
+                + collectionInstall(GALAXY_REQUIREMENTS, tmp) + "; fi");
+        install.add("if [ -f " + GALAXY_REQUIREMENTS + " ] && { grep -q '^roles:' " + GALAXY_REQUIREMENTS
+                + " || ! grep -q '^collections:' " + GALAXY_REQUIREMENTS + "; }; then "
+                + roleInstall(GALAXY_REQUIREMENTS, tmp) + "; fi");
+        install.add("if [ -f " + COLLECTION_REQUIREMENTS + " ]; then "
+                + collectionInstall(COLLECTION_REQUIREMENTS, tmp) + "; fi");
+        install.add("if [ -f " + ROLE_REQUIREMENTS + " ]; then " + roleInstall(ROLE_REQUIREMENTS, tmp) + "; fi");
+        install.add("if [ -f " + PYTHON_REQUIREMENTS + " ]; then python3 -m pip install --quiet --target "
+                + tmp + "/python -r " + PYTHON_REQUIREMENTS + "; fi");
+        install.add("touch " + tmp + "/.complete");
+        install.add("rm -rf " + depsDir);
+        install.add("mv " + tmp + " " + depsDir);
+
+        return "mkdir -p " + parent(depsDir) + " && cd " + projectDir
+                + " && (flock 9 && if [ ! -f " + depsDir + "/.complete ]; then "
+                + String.join(" && ", install)
+                + "; fi && touch " + depsDir + "/.complete) 9>" + depsDir + ".lock";
+    }
+
+    /** Shell command succeeding when the dependency set is complete, marking it as recently used */
+    public static String buildReuseCmd(String depsDir) {
+        return "test -f " + depsDir + "/.complete && touch " + depsDir + "/.complete";
+    }
+
+    /**
+     * Shell command running a command with the dependency set: the set is marked as recently used and its lock
+     * is held shared until the command finishes, so it cannot be pruned underneath the run.
+     */
+    public static String buildUseCmd(String depsDir, String command) {
+        return "(flock -s 9 && { " + buildReuseCmd(depsDir) + " || { echo 'Dependency set " + depsDir
+                + " is gone, run in a new Ansible context' >&2; exit 1; }; } && (" + command + ")) 9>" + depsDir
+                + ".lock";
+    }
+
+    /**
+     * Shell command removing the least recently used dependency sets beyond the limit. A set is only removed
+     * under its exclusive lock, after checking again that it is still idle, so sets in use are skipped.
+     */
+    public static String buildPruneCmd(String depsRoot, int keep) {
+        return "cd " + depsRoot + " && ls -1t */.complete 2>/dev/null | tail -n +" + (keep + 1)
+                + " | while read f; do d=${f%/.complete}; (flock -n 9 && [ -n \"$(find \"$f\" -mmin +"
+                + PRUNE_MIN_IDLE_MINUTES + ")\" ] && rm -rf \"$d\") 9>\"$d.lock\"; done; true";
+    }
+
+    /** Environment assignments putting the dependency set in front of the default search paths */
+    public static List<String> envAssignments(String depsDir) {
+        return List.of(
+                "ANSIBLE_COLLECTIONS_PATH=" + depsDir + "/collections"
+                        + ":${ANSIBLE_COLLECTIONS_PATH:-~/.ansible/collections:/usr/share/ansible/collections}",
+                "ANSIBLE_ROLES_PATH=" + depsDir + "/roles"
+                        + ":${ANSIBLE_ROLES_PATH:-~/.ansible/roles:/usr/share/ansible/roles:/etc/ansible/roles}",
+                "PYTHONPATH=" + depsDir + "/python${PYTHONPATH:+:$PYTHONPATH}");
+    }
+
+    private static String collectionInstall(String file, String dir) {
+        return "ansible-galaxy collection install -r " + file + " -p " + dir + "/collections";
+    }
+
+    private static String roleInstall(String file, String dir) {
+        return "ansible-galaxy role install -r " + file + " -p " + dir + "/roles";
+    }
+
+    private static String parent(String path) {
+        return path.substring(0, path.lastIndexOf('/'));
+    }
+}
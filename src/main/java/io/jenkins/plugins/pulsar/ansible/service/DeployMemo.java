@@ -0,0 +1,116 @@
+package io.jenkins.plugins.pulsar.ansible.service;
+
+import hudson.XmlFile;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+
+/**
+ * Fingerprint of the inputs of the last successful playbook run per project and environment. A run
+ * whose inputs match one that succeeded recently would re-apply a state the environment already has,
+ * so callers can skip it. Any other run replaces the entry, since it may have changed the environment.
+ */
+public class DeployMemo {
+    private static final Logger LOGGER = Logger.getLogger(DeployMemo.class.getName());
+
+    private static final String MEMO_FILE = "pulsar-deploy-memo.xml";
+
+    private DeployMemo() {}
+
+    /** Hash of the named inputs, independent of their order */
+    public static String fingerprint(Map<String, String> inputs) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Map.Entry<String, String> input : new TreeMap<>(inputs).entrySet()) {
+                digest.update((input.getKey() + "=" + input.getValue() + "\u0000").getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** The environment's last successful run when it had this fingerprint and finished within the window */
+    public static synchronized Entry lookup(String projectId, String envName, String fingerprint, int windowMinutes) {
+        Entry entry = read().environments.get(key(projectId, envName));
+        if (entry == null || !entry.fingerprint.equals(fingerprint)) {
+            return null;
+        }
+        return System.currentTimeMillis() - entry.timestamp <= windowMinutes * 60_000L ? entry : null;
+    }
+
+    /** Record a successful run of the environment */
+    public static synchronized void record(String projectId, String envName, String fingerprint, String runId) {
+        Memo memo = read();
+        memo.environments.put(key(projectId, envName), new Entry(fingerprint, System.currentTimeMillis(), runId));
+        write(memo);
+    }
+
+    /** Forget the environment's last run, before a run that may leave it in another state */
+    public static synchronized void invalidate(String projectId, String envName) {
+        Memo memo = read();
+        if (memo.environments.remove(key(projectId, envName)) != null) {
+            write(memo);
+        }
+    }
+
+    private static String key(String projectId, String envName) {
+        return projectId + "/" + envName;
+    }
+
+    private static XmlFile getFile() {
+        return new XmlFile(new File(Jenkins.get().getRootDir(), MEMO_FILE));
+    }
+
+    private static Memo read() {
+        XmlFile file = getFile();
+        try {
+            return file.exists() ? (Memo) file.read() : new Memo();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to read " + file, e);
+            return new Memo();
+        }
+    }
+
+    private static void write(Memo memo) {
+        XmlFile file = getFile();
+        try {
+            file.write(memo);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to write " + file, e);
+        }
+    }
+
+    static class Memo {
+        private final Map<String, Entry> environments = new LinkedHashMap<>();
+    }
+
+    public static class Entry {
+        private final String fingerprint;
+        private final long timestamp;
+        private final String runId;
+
+        Entry(String fingerprint, long timestamp, String runId) {
+            this.fingerprint = fingerprint;
+            this.timestamp = timestamp;
+            this.runId = runId;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public String getRunId() {
+            return runId;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package io.jenkins.plugins.pulsar.ansible.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Ansible fact cache kept on the node cache volume, one jsonfile directory per project and environment.
+ * With smart gathering, playbook runs only gather facts of hosts whose cached facts are missing or
+ * older than the timeout.
+ */
+public class FactCache {
+    private static final Pattern FACT_CACHING = Pattern.compile("(?m)^\\s*fact_caching\\s*=");
+    private static final Pattern SECTION = Pattern.compile("^\\s*\\[(.+)]\\s*$");
+
+    private FactCache() {}
+
+    /** Cache directory of a project's environment, or of all its environments when envName is null */
+    public static String cacheDir(String cacheRoot, String projectId, String envName) {
+        String projectDir = cacheRoot + "/facts/" + sanitize(projectId);
+        return envName != null ? projectDir + "/" + sanitize(envName) : projectDir;
+    }
+
+    /** Cache directory for runs without an environment, such as ad-hoc commands in the project */
+    public static String defaultDir(String cacheRoot, String projectId) {
+        return cacheDir(cacheRoot, projectId, "_default");
+    }
+
+    /** Whether the project's ansible.cfg configures a fact cache itself, which is then left alone */
+    public static boolean isConfiguredIn(String ansibleConfig) {
+        return ansibleConfig != null && FACT_CACHING.matcher(ansibleConfig).find();
+    }
+
+    /** The ansible.cfg with smart gathering and a jsonfile fact cache in the given directory */
+    public static String applyToConfig(String ansibleConfig, String defaultDir, int timeoutSeconds) {
+        List<String> settings = List.of(
+                "gathering = smart",
+                "fact_caching = jsonfile",
+                "fact_caching_connection = " + defaultDir,
+                "fact_caching_timeout = " + timeoutSeconds);
+
+        List<String> lines = new ArrayList<>();
+        boolean inDefaults = false;
+        boolean hasDefaults = false;
+        for (String line : (ansibleConfig != null ? ansibleConfig : "").split("\n", -1)) {
+            Matcher section = SECTION.matcher(line);
+            if (section.matches()) {
+                inDefaults = "defaults".equals(section.group(1).trim());
+                lines.add(line);
+                if (inDefaults) {
+                    hasDefaults = true;
+                    lines.addAll(settings);
+                }
+                continue;
+            }
+            if (inDefaults && isManagedKey(line)) {
+                continue;
+            }
+            lines.add(line);
+        }
+        if (!hasDefaults) {
+            List<String> defaults = new ArrayList<>();
+            defaults.add("[defaults]");
+            defaults.addAll(settings);
+            defaults.add("");
+            lines.addAll(0, defaults);
+        }
+        return String.join("\n", lines);
+    }
+
+    /** Shell command removing the cached facts of the given hosts, or all of them when hosts is empty */
+    public static String buildInvalidateCmd(String dir, List<String> hosts) {
+        if (hosts == null || hosts.isEmpty()) {
+            return "rm -rf " + dir;
+        }
+        List<String> files = new ArrayList<>();
+        for (String host : hosts) {
+            // Cache files are named after the inventory host, a name with a path in it is not one of them
+            if (host == null || host.isEmpty() || host.startsWith(".") || host.contains("/")) {
+                throw new IllegalArgumentException("Invalid host name: " + host);
+            }
+            files.add("'" + dir + "/" + host.replace("'", "") + "'");
+        }
+        return "rm -f " + String.join(" ", files);
+    }
+
+    private static boolean isManagedKey(String line) {
+        String key = line.split("=", 2)[0].trim();
+        return key.equals("gathering") || key.startsWith("fact_caching");
+    }
+
+    private static String sanitize(String name) {
+        return name.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+}
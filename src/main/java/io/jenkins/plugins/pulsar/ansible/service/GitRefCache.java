@@ -0,0 +1,155 @@
+package io.jenkins.plugins.pulsar.ansible.service;
+
+import hudson.model.Computer;
+import io.jenkins.plugins.pulsar.ansible.AnsibleProjectsGlobalConfiguration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Per-repository cache of remote branches and tags. Fresh entries are served directly, stale ones
+ * are served while a background refresh runs, and concurrent fetches of the same repository share a
+ * single "git ls-remote". Entries can be invalidated by a webhook after a push.
+ */
+public class GitRefCache {
+    private static final Logger LOGGER = Logger.getLogger(GitRefCache.class.getName());
+
+    private static final int FETCH_TIMEOUT_SECONDS = 60;
+
+    private static final Map<String, RemoteRefs> cached = new ConcurrentHashMap<>();
+    private static final Map<String, CompletableFuture<RemoteRefs>> inFlight = new ConcurrentHashMap<>();
+
+    private GitRefCache() {}
+
+    /** Cached refs of the repository, stale data triggers a background refresh; blocks only on first load */
+    public static RemoteRefs get(String repoUrl) throws Exception {
+        RemoteRefs refs = cached.get(repoUrl);
+        if (refs == null) {
+            return await(refresh(repoUrl));
+        }
+        if (refs.isStale(getTtlMillis())) {
+            refresh(repoUrl);
+        }
+        return refs;
+    }
+
+    /** Cached refs while within the TTL (and not invalidated), otherwise waits for a refresh */
+    public static RemoteRefs getCurrent(String repoUrl) throws Exception {
+        return getRecent(repoUrl, getTtlMillis());
+    }
+
+    /** Cached refs fetched within the given age (and not invalidated), otherwise waits for a refresh */
+    public static RemoteRefs getRecent(String repoUrl, long maxAgeMillis) throws Exception {
+        RemoteRefs refs = cached.get(repoUrl);
+        if (refs != null && !refs.isStale(maxAgeMillis)) {
+            return refs;
+        }
+        return await(refresh(repoUrl));
+    }
+
+    /** Fetch the refs now, joining a fetch already in flight for the repository */
+    public static RemoteRefs getFresh(String repoUrl) throws Exception {
+        return await(refresh(repoUrl));
+    }
+
+    /** Mark the repository stale and refresh it in the background, the stale refs are served meanwhile */
+    public static void invalidate(String repoUrl) {
+        RemoteRefs refs = cached.get(repoUrl);
+        if (refs != null) {
+            refs.invalidated = true;
+        }
+        refresh(repoUrl);
+    }
+
+    /** Start a fetch unless one is already running for the repository */
+    private static CompletableFuture<RemoteRefs> refresh(String repoUrl) {
+        CompletableFuture<RemoteRefs> future = new CompletableFuture<>();
+        CompletableFuture<RemoteRefs> running = inFlight.putIfAbsent(repoUrl, future);
+        if (running != null) {
+            return running;
+        }
+
+        Computer.threadPoolForRemoting.submit(() -> {
+            try {
+                RemoteRefs refs = new RemoteRefs(GitRefResolver.listRemoteRefs(repoUrl));
+                cached.put(repoUrl, refs);
+                inFlight.remove(repoUrl, future);
+                future.complete(refs);
+            } catch (Throwable e) {
+                LOGGER.log(Level.WARNING, "Failed to list remote refs of " + repoUrl, e);
+                inFlight.remove(repoUrl, future);
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    private static RemoteRefs await(CompletableFuture<RemoteRefs> future) throws Exception {
+        try {
+            return future.get(FETCH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        } catch (TimeoutException e) {
+            throw new Exception("Timed out listing remote refs after " + FETCH_TIMEOUT_SECONDS + "s");
+        }
+    }
+
+    private static long getTtlMillis() {
+        return TimeUnit.SECONDS.toMillis(AnsibleProjectsGlobalConfiguration.get().getRefCacheTtlSeconds());
+    }
+
+    /** Listing of remote refs (ref name -> commit SHA) as of one ls-remote */
+    public static class RemoteRefs {
+        private final Map<String, String> refs;
+        private final long fetchedAt;
+        private volatile boolean invalidated = false;
+
+        RemoteRefs(Map<String, String> refs) {
+            this.refs = Collections.unmodifiableMap(refs);
+            this.fetchedAt = System.currentTimeMillis();
+        }
+
+        boolean isStale(long ttlMillis) {
+            return invalidated || System.currentTimeMillis() - fetchedAt >= ttlMillis;
+        }
+
+        public Map<String, String> getRefs() {
+            return refs;
+        }
+
+        public long getFetchedAt() {
+            return fetchedAt;
+        }
+
+        public List<String> getBranches() {
+            return names("refs/heads/");
+        }
+
+        public List<String> getTags() {
+            return names("refs/tags/");
+        }
+
+        /** Resolve a branch, tag ("tags/x"), full ref name or SHA to a commit, null if unknown */
+        public String resolve(String ref) {
+            return GitRefResolver.resolveCommit(refs, ref);
+        }
+
+        private List<String> names(String prefix) {
+            List<String> names = new ArrayList<>();
+            for (String ref : refs.keySet()) {
+                if (ref.startsWith(prefix) && !ref.endsWith("^{}")) {
+                    names.add(ref.substring(prefix.length()));
+                }
+            }
+            return names;
+        }
+    }
+}
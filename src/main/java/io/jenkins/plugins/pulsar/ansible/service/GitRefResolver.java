@@ -0,0 +1,74 @@
+package io.jenkins.plugins.pulsar.ansible.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+import org.eclipse.jgit.lib.ObjectId;
+import org.jenkinsci.plugins.gitclient.Git;
+import org.jenkinsci.plugins.gitclient.GitClient;
+
+/** Resolves branch, tag and commit references of a remote repository to commit SHAs */
+public class GitRefResolver {
+    private static final Pattern COMMIT_SHA = Pattern.compile("[0-9a-fA-F]{40}");
+    private static final long RESOLVE_MAX_AGE_MILLIS = 5000;
+
+    private GitRefResolver() {}
+
+    /** List all remote references (ref name -> commit SHA), peeled tags point to their commit */
+    public static Map<String, String> listRemoteRefs(String repoUrl) throws Exception {
+        GitClient gitClient = Git.with(null, null).getClient();
+        Map<String, ObjectId> refs = gitClient.getRemoteReferences(repoUrl, null, false, false);
+
+        Map<String, String> resolved = new LinkedHashMap<>();
+        for (Map.Entry<String, ObjectId> entry : refs.entrySet()) {
+            if (entry.getValue() != null) {
+                resolved.put(entry.getKey(), entry.getValue().name());
+            }
+        }
+        return resolved;
+    }
+
+    /** Resolve a ref (branch, tag, "tags/x", full ref name or SHA) against a remote ref listing */
+    public static String resolveCommit(Map<String, String> remoteRefs, String ref) {
+        if (ref == null || ref.trim().isEmpty()) {
+            return null;
+        }
+        String name = ref.trim();
+        if (isCommitSha(name)) {
+            return name.toLowerCase();
+        }
+
+        String[] candidates = name.startsWith("refs/")
+                ? new String[] {name}
+                : name.startsWith("tags/")
+                        ? new String[] {"refs/" + name}
+                        : new String[] {"refs/heads/" + name, "refs/tags/" + name};
+
+        for (String candidate : candidates) {
+            // Annotated tags: prefer the peeled commit over the tag object
+            String peeled = remoteRefs.get(candidate + "^{}");
+            if (peeled != null) {
+                return peeled;
+            }
+            String sha = remoteRefs.get(candidate);
+            if (sha != null) {
+                return sha;
+            }
+        }
+        return null;
+    }
+
+    /** Resolve a ref of a remote repository to a commit SHA, null when it does not exist */
+    public static String resolveCommit(String repoUrl, String ref) throws Exception {
+        if (ref != null && isCommitSha(ref.trim())) {
+            return ref.trim().toLowerCase();
+        }
+        // Deploys must see the latest push, so only a listing from the last few seconds is reused; that
+        // still lets the contexts a build creates at once share one ls-remote
+        return GitRefCache.getRecent(repoUrl, RESOLVE_MAX_AGE_MILLIS).resolve(ref);
+    }
+
+    public static boolean isCommitSha(String ref) {
+        return ref != null && COMMIT_SHA.matcher(ref).matches();
+    }
+}
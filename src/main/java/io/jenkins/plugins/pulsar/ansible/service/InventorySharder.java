@@ -0,0 +1,50 @@
+package io.jenkins.plugins.pulsar.ansible.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/** Splits the hosts of an inventory into shards run as separate ansible-playbook processes */
+public class InventorySharder {
+    // Below this many hosts per shard the extra controller process costs more than it saves
+    public static final int MIN_HOSTS_PER_SHARD = 25;
+
+    private static final Pattern HOSTS_HEADER = Pattern.compile("\\s*hosts \\(\\d+\\):\\s*");
+
+    private InventorySharder() {}
+
+    /** Host names from "ansible <pattern> --list-hosts" output, skipping the header and warnings */
+    public static List<String> parseListHosts(String output) {
+        List<String> hosts = new ArrayList<>();
+        if (output == null) {
+            return hosts;
+        }
+        for (String line : output.split("\n")) {
+            String host = line.trim();
+            if (host.isEmpty() || host.startsWith("[") || HOSTS_HEADER.matcher(line).matches()) {
+                continue;
+            }
+            hosts.add(host);
+        }
+        return hosts;
+    }
+
+    /** Shard count sized to the controller cores, without shards smaller than MIN_HOSTS_PER_SHARD */
+    public static int autoShardCount(int hostCount, int cores) {
+        int byHosts = Math.max(1, hostCount / MIN_HOSTS_PER_SHARD);
+        return Math.max(1, Math.min(Math.max(1, cores), byHosts));
+    }
+
+    /** Deal hosts round-robin into at most the given number of non-empty shards */
+    public static List<List<String>> partition(List<String> hosts, int shardCount) {
+        int count = Math.max(1, Math.min(shardCount, hosts.size()));
+        List<List<String>> shards = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            shards.add(new ArrayList<>());
+        }
+        for (int i = 0; i < hosts.size(); i++) {
+            shards.get(i % count).add(hosts.get(i));
+        }
+        return shards;
+    }
+}
@@ -0,0 +1,83 @@
+package io.jenkins.plugins.pulsar.ansible.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/** Per-host counters of ansible-playbook "PLAY RECAP" lines, mergeable across several runs */
+public class PlayRecap implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final Pattern RECAP_LINE = Pattern.compile("^\\s*(\\S+)\\s+:\\s+(ok=\\d+(?:\\s+\\w+=\\d+)*)\\s*$");
+    private static final Pattern COUNTER = Pattern.compile("(\\w+)=(\\d+)");
+
+    // host -> counter (ok, changed, unreachable, failed, ...) -> value
+    private final Map<String, Map<String, Integer>> hosts = new TreeMap<>();
+
+    /** Record a line of playbook output if it is a recap line */
+    public synchronized void accept(String line) {
+        Matcher matcher = RECAP_LINE.matcher(line);
+        if (!matcher.matches()) {
+            return;
+        }
+        Map<String, Integer> counters = new LinkedHashMap<>();
+        Matcher counter = COUNTER.matcher(matcher.group(2));
+        while (counter.find()) {
+            counters.put(counter.group(1), Integer.parseInt(counter.group(2)));
+        }
+        hosts.put(matcher.group(1), counters);
+    }
+
+    /** Add the hosts of another recap, hosts present in both take the other's counters */
+    public synchronized void merge(PlayRecap other) {
+        hosts.putAll(other.getHosts());
+    }
+
+    public synchronized Map<String, Map<String, Integer>> getHosts() {
+        Map<String, Map<String, Integer>> copy = new TreeMap<>();
+        hosts.forEach((host, counters) -> copy.put(host, new LinkedHashMap<>(counters)));
+        return copy;
+    }
+
+    /** Whether any host failed or was unreachable */
+    public synchronized boolean hasFailures() {
+        return hosts.values().stream()
+                .anyMatch(counters -> counters.getOrDefault("failed", 0) > 0
+                        || counters.getOrDefault("unreachable", 0) > 0);
+    }
+
+    /** Render in the ansible-playbook recap layout */
+    public synchronized String format() {
+        int width = hosts.keySet().stream().mapToInt(String::length).max().orElse(0);
+        StringBuilder out = new StringBuilder();
+        hosts.forEach((host, counters) -> {
+            out.append(String.format("%-" + Math.max(1, width) + "s : ", host));
+            counters.forEach((name, value) -> out.append(String.format("%-14s", name + "=" + value)));
+            out.append('\n');
+        });
+        return out.toString();
+    }
+
+    /** Output stream feeding every line written to it into this recap */
+    public OutputStream newCollector() {
+        return new OutputStream() {
+            private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+            @Override
+            public synchronized void write(int b) {
+                if (b == '\n') {
+                    accept(line.toString(StandardCharsets.UTF_8));
+                    line.reset();
+                } else if (line.size() < 4096) {
+                    line.write(b);
+                }
+            }
+        };
+    }
+}
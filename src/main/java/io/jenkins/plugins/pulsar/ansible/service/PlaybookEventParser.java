@@ -0,0 +1,150 @@
+package io.jenkins.plugins.pulsar.ansible.service;
+
+import hudson.model.TaskListener;
+import hudson.util.StreamTaskListener;
+import io.jenkins.plugins.pulsar.ansible.model.PlaybookResult;
+import io.jenkins.plugins.pulsar.ansible.model.PlaybookResult.TaskEvent;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.sf.json.JSONException;
+import net.sf.json.JSONNull;
+import net.sf.json.JSONObject;
+
+/**
+ * Splits the event lines written by the pulsar_events callback plugin out of ansible-playbook output.
+ * Events are parsed line by line as they arrive and recorded into a {@link PlaybookResult}; all other
+ * output is passed through to the build log unchanged.
+ */
+public class PlaybookEventParser extends OutputStream {
+    private static final Logger LOGGER = Logger.getLogger(PlaybookEventParser.class.getName());
+
+    /** Prefix of event lines, the callback plugin reads it from PULSAR_EVENT_MARKER */
+    public static final String MARKER = "@@pulsar-event@@ ";
+
+    private static final byte[] MARKER_BYTES = MARKER.getBytes(StandardCharsets.UTF_8);
+    // Longer lines cannot be events (messages are truncated by the plugin) and are passed through as they come
+    private static final int MAX_LINE = 64 * 1024;
+
+    private final OutputStream delegate;
+    private final PlaybookResult result;
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+    private boolean passThrough;
+
+    public PlaybookEventParser(OutputStream delegate, PlaybookResult result) {
+        this.delegate = delegate;
+        this.result = result;
+    }
+
+    /** Listener writing to the given one, with event lines recorded into the result instead */
+    public static TaskListener attach(TaskListener listener, PlaybookResult result) {
+        return new StreamTaskListener(new PlaybookEventParser(listener.getLogger(), result), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public synchronized void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) throws IOException {
+        int start = off;
+        for (int i = off; i < off + len; i++) {
+            if (b[i] == '\n') {
+                append(b, start, i + 1 - start);
+                endLine();
+                start = i + 1;
+            }
+        }
+        append(b, start, off + len - start);
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        // A partial line is held back until it is known not to be an event
+        if (line.size() >= MARKER_BYTES.length && !startsWithMarker()) {
+            passThrough = true;
+            line.writeTo(delegate);
+            line.reset();
+        }
+        delegate.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (line.size() > 0) {
+            endLine();
+        }
+        delegate.flush();
+    }
+
+    private void append(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return;
+        }
+        if (passThrough) {
+            delegate.write(b, off, len);
+            return;
+        }
+        line.write(b, off, len);
+        if (line.size() > MAX_LINE) {
+            passThrough = true;
+            line.writeTo(delegate);
+            line.reset();
+        }
+    }
+
+    private void endLine() throws IOException {
+        if (!passThrough && startsWithMarker()) {
+            String json = line.toString(StandardCharsets.UTF_8).substring(MARKER.length()).trim();
+            parse(json);
+        } else if (!passThrough) {
+            line.writeTo(delegate);
+        }
+        delegate.flush();
+        line.reset();
+        passThrough = false;
+    }
+
+    private boolean startsWithMarker() {
+        byte[] bytes = line.toByteArray();
+        if (bytes.length < MARKER_BYTES.length) {
+            return false;
+        }
+        for (int i = 0; i < MARKER_BYTES.length; i++) {
+            if (bytes[i] != MARKER_BYTES[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void parse(String json) {
+        try {
+            JSONObject event = JSONObject.fromObject(json);
+            if (!"result".equals(event.optString("event")) || !event.has("host") || !event.has("status")) {
+                return;
+            }
+            result.record(new TaskEvent(
+                    optString(event, "play"),
+                    optString(event, "task"),
+                    optString(event, "role"),
+                    event.getString("host"),
+                    event.getString("status"),
+                    event.optBoolean("changed"),
+                    event.optLong("duration"),
+                    optString(event, "msg")));
+        } catch (JSONException e) {
+            LOGGER.log(Level.FINE, "Ignoring malformed playbook event: " + json, e);
+        }
+    }
+
+    /** String value of the key, null when it is missing or JSON null */
+    private static String optString(JSONObject event, String key) {
+        Object value = event.opt(key);
+        return value == null || JSONNull.getInstance().equals(value) ? null : value.toString();
+    }
+}
@@ -0,0 +1,275 @@
+package io.jenkins.plugins.pulsar.ansible.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Builder for project checkout commands. With a mirror directory the repository is fetched once per
+ * node into a bare mirror (shared by all containers through the cache volume) and checked out as a
+ * clone borrowing the mirror objects; without one, or when the volume is not mounted, it falls back
+ * to a plain clone. Shallow and partial clones fetch only the requested ref, sparse patterns limit
+ * the working tree in every mode.
+ */
+public class ProjectCheckoutCommandBuilder {
+
+    private String repository;
+    private String ref;
+    private String commit;
+    private String projectDir;
+    private String cacheVolume;
+    private int depth;
+    private String filter;
+    private List<String> sparsePatterns = new ArrayList<>();
+
+    public ProjectCheckoutCommandBuilder repository(String repository) {
+        this.repository = repository;
+        return this;
+    }
+
+    public ProjectCheckoutCommandBuilder ref(String ref) {
+        this.ref = ref;
+        return this;
+    }
+
+    /** Commit the ref resolved to; when already present locally the checkout needs no network I/O */
+    public ProjectCheckoutCommandBuilder commit(String commit) {
+        this.commit = commit;
+        return this;
+    }
+
+    public ProjectCheckoutCommandBuilder projectDir(String projectDir) {
+        this.projectDir = projectDir;
+        return this;
+    }
+
+    /** Node cache volume mounted into the container to keep bare mirrors in, null to always clone directly */
+    public ProjectCheckoutCommandBuilder cacheVolume(String cacheVolume) {
+        this.cacheVolume = cacheVolume;
+        return this;
+    }
+
+    /** History depth for direct clones, 0 for full history (mirrors always hold full history) */
+    public ProjectCheckoutCommandBuilder depth(int depth) {
+        this.depth = Math.max(0, depth);
+        return this;
+    }
+
+    /** Partial clone filter for direct clones, e.g. "blob:none" */
+    public ProjectCheckoutCommandBuilder filter(String filter) {
+        this.filter = filter != null && !filter.trim().isEmpty() ? filter.trim() : null;
+        return this;
+    }
+
+    /** Sparse checkout patterns in gitignore syntax, empty for a full working tree */
+    public ProjectCheckoutCommandBuilder sparsePatterns(List<String> sparsePatterns) {
+        this.sparsePatterns = sparsePatterns != null ? new ArrayList<>(sparsePatterns) : new ArrayList<>();
+        return this;
+    }
+
+    /** Build the complete checkout command */
+    public String buildCmd() {
+        validate();
+
+        boolean partial = depth > 0 || filter != null || !sparsePatterns.isEmpty();
+        String cmd = partial ? buildFetchCmd() : buildDirectCmd();
+        if (cacheVolume != null) {
+            // The volume is only mounted in containers created after mirrors were enabled
+            cmd = String.format(
+                    "if grep -qs ' %s ' /proc/mounts; then %s; else %s; fi", cacheVolume, buildMirrorCmd(), cmd);
+        }
+
+        if (commit == null) {
+            return cmd;
+        }
+
+        // Commit already in the checkout: restore the tree without touching the remote or the mirror
+        String dir = quote(projectDir);
+        return String.format(
+                "if git -C %s cat-file -e %s 2>/dev/null; then "
+                        + "git -C %s checkout --force --quiet --detach %s; else %s; fi",
+                dir,
+                quote(commit + "^{commit}"),
+                dir,
+                quote(commit),
+                cmd);
+    }
+
+    /**
+     * Short key of the checkout mode (depth, filter, sparse patterns), empty for a full checkout.
+     * Checkouts in different modes must not share a directory.
+     */
+    public String getModeKey() {
+        if (depth == 0 && filter == null && sparsePatterns.isEmpty()) {
+            return "";
+        }
+        return sha256(depth + "\n" + filter + "\n" + String.join("\n", sparsePatterns)).substring(0, 8);
+    }
+
+    /** Path of the bare mirror for the repository */
+    public String getMirrorPath() {
+        return getMirrorsDir() + "/" + sha256(repository).substring(0, 16) + ".git";
+    }
+
+    private String getMirrorsDir() {
+        return cacheVolume + "/git-mirrors";
+    }
+
+    /** Plain clone, reusing an existing checkout of the same repository */
+    private String buildDirectCmd() {
+        String ref = getCheckoutRef();
+        return String.format(
+                "(cd %s && git remote get-url origin 2>/dev/null | grep -q %s && git fetch && git reset --hard %s) || "
+                        + "(rm -rf %s && git clone %s %s && cd %s && git checkout %s)",
+                quote(projectDir),
+                quote(repository),
+                quote(ref),
+                quote(projectDir),
+                quote(repository),
+                quote(projectDir),
+                quote(projectDir),
+                quote(ref));
+    }
+
+    /** Fetch only the requested ref into a reused or fresh repository, honouring depth, filter and sparse */
+    private String buildFetchCmd() {
+        String dir = quote(projectDir);
+
+        List<String> parts = new ArrayList<>();
+        parts.add("set -e");
+        parts.add("if [ \"$(git -C " + dir + " config remote.origin.url 2>/dev/null)\" != " + quote(repository)
+                + " ]; then rm -rf " + dir + " && git init --quiet " + dir + " && git -C " + dir
+                + " remote add origin " + quote(repository) + "; fi");
+        parts.addAll(buildSparseSetup(dir));
+
+        StringBuilder fetch = new StringBuilder("git -C " + dir + " fetch --quiet --no-tags");
+        if (depth > 0) {
+            fetch.append(" --depth ").append(depth);
+        }
+        if (filter != null) {
+            fetch.append(" --filter=").append(quote(filter));
+        }
+        fetch.append(" origin ");
+
+        if (commit == null || GitRefResolver.isCommitSha(ref.trim())) {
+            parts.add(fetch + quote(toFetchRef(getCheckoutRef())));
+            parts.add("git -C " + dir + " checkout --force --quiet --detach FETCH_HEAD");
+        } else {
+            // Fetching a SHA needs uploadpack.allowReachableSHA1InWant on the server, so fetch the ref by
+            // name and only ask for the SHA when the ref has moved on since it was resolved
+            parts.add(fetch + quote(toFetchRef(ref)));
+            parts.add("if [ \"$(git -C " + dir + " rev-parse FETCH_HEAD^{commit})\" != " + quote(commit) + " ]; then "
+                    + fetch + quote(commit) + " || { echo " + quote(ref + " no longer points to " + commit)
+                    + " >&2; exit 1; }; fi");
+            parts.add("git -C " + dir + " checkout --force --quiet --detach " + quote(commit));
+        }
+
+        return "(" + String.join("\n", parts) + "\n)";
+    }
+
+    /**
+     * Create or update the node mirror under a lock. Runs in any container with the cache volume
+     * mounted, so it can warm the mirror while the exec container is still starting.
+     */
+    public String buildMirrorSyncCmd() {
+        validate();
+        String mirror = quote(getMirrorPath());
+        String tmpMirror = quote(getMirrorPath() + ".tmp");
+
+        String fetch = "git -C " + mirror + " fetch --prune --quiet origin";
+        if (commit != null) {
+            // Only go to the remote when the mirror does not have the commit yet
+            fetch = "git -C " + mirror + " cat-file -e " + quote(commit + "^{commit}") + " 2>/dev/null || " + fetch;
+        }
+
+        // Serialize mirror updates across containers sharing the node volume
+        return "mkdir -p " + quote(getMirrorsDir())
+                + " && (exec 9>" + quote(getMirrorPath() + ".lock")
+                + "; if command -v flock >/dev/null 2>&1; then flock 9; fi; "
+                + "if [ -d " + mirror + " ]; then " + fetch + "; "
+                + "else rm -rf " + tmpMirror + " && git clone --mirror --quiet " + quote(repository) + " " + tmpMirror
+                // Checkouts borrow mirror objects, so the mirror must never drop unreachable objects
+                + " && git -C " + tmpMirror + " config gc.pruneExpire never"
+                + " && git -C " + tmpMirror + " config gc.reflogExpireUnreachable never"
+                + " && mv " + tmpMirror + " " + mirror + "; fi)";
+    }
+
+    /** Sync the node mirror, then materialize the checkout from it */
+    private String buildMirrorCmd() {
+        String mirror = quote(getMirrorPath());
+        String dir = quote(projectDir);
+
+        List<String> parts = new ArrayList<>();
+        parts.add("set -e");
+        parts.add(buildMirrorSyncCmd());
+        parts.add("commit=$(git -C " + mirror + " rev-parse --verify --quiet " + quote(getCheckoutRef() + "^{commit}")
+                + ")");
+        parts.add("if [ \"$(git -C " + dir + " config remote.origin.url 2>/dev/null)\" = " + mirror + " ]; then "
+                + "git -C " + dir + " fetch --quiet origin; "
+                + "else rm -rf " + dir + " && git clone --shared --no-checkout --quiet " + mirror + " " + dir + "; fi");
+        parts.addAll(buildSparseSetup(dir));
+        parts.add("git -C " + dir + " checkout --force --quiet --detach \"$commit\"");
+
+        return "(" + String.join("\n", parts) + "\n)";
+    }
+
+    private String getCheckoutRef() {
+        return commit != null ? commit : ref;
+    }
+
+    /** Configure non-cone sparse checkout, works on any git version that supports sparse checkout */
+    private List<String> buildSparseSetup(String dir) {
+        List<String> parts = new ArrayList<>();
+        if (sparsePatterns.isEmpty()) {
+            return parts;
+        }
+
+        StringBuilder patterns = new StringBuilder("printf '%s\\n'");
+        for (String pattern : sparsePatterns) {
+            patterns.append(' ').append(quote(pattern));
+        }
+        parts.add("git -C " + dir + " config core.sparseCheckout true");
+        parts.add("git -C " + dir + " config core.sparseCheckoutCone false");
+        parts.add("mkdir -p " + quote(projectDir + "/.git/info"));
+        parts.add(patterns + " > " + quote(projectDir + "/.git/info/sparse-checkout"));
+        return parts;
+    }
+
+    /** Refs as accepted by "git fetch origin <ref>": branches, tags, full ref names and SHAs */
+    private static String toFetchRef(String ref) {
+        String trimmed = ref.trim();
+        if (trimmed.toLowerCase(Locale.ROOT).startsWith("tags/")) {
+            return "refs/" + trimmed;
+        }
+        return trimmed;
+    }
+
+    private void validate() {
+        if (repository == null || repository.trim().isEmpty()) {
+            throw new IllegalStateException("Repository is required");
+        }
+        if (ref == null || ref.trim().isEmpty()) {
+            throw new IllegalStateException("Ref is required");
+        }
+        if (projectDir == null || projectDir.trim().isEmpty()) {
+            throw new IllegalStateException("Project directory is required");
+        }
+    }
+
+    private static String quote(String value) {
+        return "'" + value.replace("'", "'\\''") + "'";
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package io.jenkins.plugins.pulsar.ansible.service;
+
+import hudson.Launcher;
+import hudson.model.TaskListener;
+import io.jenkins.plugins.pulsar.container.service.ContainerManager;
+import io.jenkins.plugins.pulsar.shared.LaunchHelper;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Local image cache of prepared Ansible exec environments. After the first successful setup of a
+ * project at a given commit, the container is committed to an image tagged by (exec env image,
+ * project, commit) so later contexts on the same node start with the project already in place.
+ * Snapshot images are pruned per node in least recently used order.
+ */
+public class SnapshotCache {
+    private static final Logger LOGGER = Logger.getLogger(SnapshotCache.class.getName());
+
+    public static final String SNAPSHOT_LABEL = "io.jenkins.pulsar.snapshot=true";
+    public static final String PROJECT_LABEL_PREFIX = "io.jenkins.pulsar.snapshot.project=";
+    public static final String COMMIT_LABEL_PREFIX = "io.jenkins.pulsar.snapshot.commit=";
+    public static final String BASE_IMAGE_LABEL_PREFIX = "io.jenkins.pulsar.snapshot.base=";
+
+    private static final String REPOSITORY_PREFIX = "pulsar-snapshot/";
+    private static final int COMMIT_TIMEOUT_SECONDS = 600;
+    private static final int INSPECT_TIMEOUT_SECONDS = 30;
+    private static final int REMOVE_TIMEOUT_SECONDS = 60;
+
+    // nodeName -> snapshot tag -> last used (millis), lost on restart where image creation time takes over
+    private static final Map<String, Map<String, Long>> lastUsed = new ConcurrentHashMap<>();
+
+    private SnapshotCache() {}
+
+    /** Local image tag for a prepared (exec env image, project, commit) combination checked out into projectDir */
+    public static String getSnapshotTag(String baseImage, String projectId, String commit, String projectDir) {
+        String repository = projectId.toLowerCase().replaceAll("[^a-z0-9._-]", "-");
+        String key = sha256(baseImage + "\n" + projectId + "\n" + commit + "\n" + projectDir);
+        return REPOSITORY_PREFIX + repository + ":" + key.substring(0, 16);
+    }
+
+    /** Whether the snapshot image is present on the node */
+    public static boolean exists(String tag, Launcher launcher, TaskListener listener) {
+        try {
+            return LaunchHelper.executeQuietlyDiscardOutput(
+                            launcher, List.of("docker", "image", "inspect", tag), INSPECT_TIMEOUT_SECONDS, listener)
+                    == 0;
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Failed to inspect snapshot image " + tag, e);
+            return false;
+        }
+    }
+
+    /** Commit the prepared container to the snapshot tag, returns false if docker commit failed */
+    public static boolean create(
+            ContainerManager container,
+            String tag,
+            String baseImage,
+            String projectId,
+            String commit,
+            Launcher launcher,
+            TaskListener listener)
+            throws InterruptedException {
+        // A container shared with other builds holds their checkouts and runs their playbooks
+        if (!container.beginExclusive()) {
+            listener.getLogger().println("Container is shared with other builds, not creating snapshot " + tag);
+            return false;
+        }
+
+        // The exclusive hold keeps writers out, so the container need not be paused
+        List<String> commitCmd = List.of(
+                "docker",
+                "commit",
+                "--pause=false",
+                "--change",
+                "LABEL " + SNAPSHOT_LABEL,
+                "--change",
+                "LABEL " + PROJECT_LABEL_PREFIX + projectId,
+                "--change",
+                "LABEL " + COMMIT_LABEL_PREFIX + commit,
+                "--change",
+                "LABEL " + BASE_IMAGE_LABEL_PREFIX + baseImage,
+                container.getContainerId(),
+                tag);
+
+        try {
+            long start = System.currentTimeMillis();
+            int exitCode =
+                    LaunchHelper.executeQuietlyDiscardOutput(launcher, commitCmd, COMMIT_TIMEOUT_SECONDS, listener);
+            if (exitCode != 0) {
+                listener.getLogger().println("Warning: Failed to create environment snapshot " + tag);
+                return false;
+            }
+            touch(container.getNodeName(), tag);
+            listener.getLogger()
+                    .println("Created environment snapshot " + tag + " in " + (System.currentTimeMillis() - start)
+                            + " ms");
+            return true;
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            listener.getLogger()
+                    .println("Warning: Failed to create environment snapshot " + tag + ": " + e.getMessage());
+            return false;
+        } finally {
+            container.endExclusive();
+        }
+    }
+
+    /** Record a use of the snapshot for LRU ordering */
+    public static void touch(String nodeName, String tag) {
+        lastUsed.computeIfAbsent(nodeName, k -> new ConcurrentHashMap<>()).put(tag, System.currentTimeMillis());
+    }
+
+    /** Remove least recently used snapshot images beyond the per-node limit */
+    public static void prune(String nodeName, int maxSnapshots, Launcher launcher, TaskListener listener)
+            throws InterruptedException {
+        List<String> listCmd = List.of(
+                "docker",
+                "images",
+                "--filter",
+                "label=" + SNAPSHOT_LABEL,
+                "--format",
+                "{{.Repository}}:{{.Tag}}|{{.CreatedAt}}");
+
+        String output;
+        try {
+            output = LaunchHelper.executeAndCapture(launcher, listCmd, INSPECT_TIMEOUT_SECONDS, listener);
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to list snapshot images on node " + nodeName, e);
+            return;
+        }
+        if (output == null) {
+            return;
+        }
+
+        Map<String, Long> nodeUsage = lastUsed.computeIfAbsent(nodeName, k -> new ConcurrentHashMap<>());
+        List<SnapshotImage> snapshots = new ArrayList<>();
+        for (String line : output.split("\n")) {
+            String[] parts = line.trim().split("\\|", 2);
+            if (parts.length == 2 && !parts[0].endsWith(":<none>")) {
+                snapshots.add(new SnapshotImage(parts[0], nodeUsage.getOrDefault(parts[0], 0L), parts[1]));
+            }
+        }
+
+        if (snapshots.size() <= maxSnapshots) {
+            return;
+        }
+
+        // Never used since restart first (oldest created first), then least recently used
+        snapshots.sort(Comparator.comparingLong((SnapshotImage s) -> s.lastUsed).thenComparing(s -> s.createdAt));
+
+        int toRemove = snapshots.size() - maxSnapshots;
+        for (SnapshotImage snapshot : snapshots.subList(0, toRemove)) {
+            try {
+                // Fails harmlessly while a container still runs from the image
+                int exitCode = LaunchHelper.executeQuietlyDiscardOutput(
+                        launcher, List.of("docker", "rmi", snapshot.tag), REMOVE_TIMEOUT_SECONDS, listener);
+                if (exitCode == 0) {
+                    nodeUsage.remove(snapshot.tag);
+                    listener.getLogger().println("Pruned environment snapshot " + snapshot.tag);
+                }
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                LOGGER.log(Level.FINE, "Failed to remove snapshot image " + snapshot.tag, e);
+            }
+        }
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class SnapshotImage {
+        private final String tag;
+        private final long lastUsed;
+        private final String createdAt;
+
+        SnapshotImage(String tag, long lastUsed, String createdAt) {
+            this.tag = tag;
+            this.lastUsed = lastUsed;
+            this.createdAt = createdAt;
+        }
+    }
+}
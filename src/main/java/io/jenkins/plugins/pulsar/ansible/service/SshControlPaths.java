@@ -0,0 +1,58 @@
+package io.jenkins.plugins.pulsar.ansible.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * SSH ControlMaster settings for playbook runs. Each environment gets a control socket directory on
+ * the node cache volume, so master connections outlive a single playbook run and its container, and
+ * later runs against the same hosts skip the SSH handshake.
+ */
+public class SshControlPaths {
+    private static final Pattern SSH_ARGS =
+            Pattern.compile("(?m)^\\s*ssh_args\\s*=\\s*(.*)$");
+    private static final Pattern CONTROL_OPTION =
+            Pattern.compile("-o\\s*Control(Master|Persist|Path)\\s*=\\s*\\S+", Pattern.CASE_INSENSITIVE);
+
+    // %%C becomes %C after ansible's formatting, a hash of host, port and user short enough for socket paths
+    public static final String CONTROL_PATH = "%(directory)s/%%C";
+
+    private SshControlPaths() {}
+
+    /** Control socket directory of an environment under the cache root */
+    public static String controlDir(String cacheRoot, String envName) {
+        String name = envName.replaceAll("[^A-Za-z0-9._-]", "_");
+        // Unix socket paths are limited to about 108 bytes, leave room for the 40 character hash
+        if (name.length() > 32) {
+            name = name.substring(0, 32);
+        }
+        return cacheRoot + "/ssh-cp/" + name;
+    }
+
+    /** The ssh_args of the project's ansible.cfg with its control options replaced by the managed ones */
+    public static String sshArgs(String ansibleConfig, int persistSeconds) {
+        String base = "";
+        if (ansibleConfig != null) {
+            Matcher matcher = SSH_ARGS.matcher(ansibleConfig);
+            if (matcher.find()) {
+                base = CONTROL_OPTION.matcher(matcher.group(1)).replaceAll("").trim();
+            }
+        }
+
+        List<String> args = new ArrayList<>();
+        if (!base.isEmpty()) {
+            args.add(base.replaceAll("\\s+", " "));
+        }
+        args.add("-o ControlMaster=auto");
+        args.add("-o ControlPersist=" + persistSeconds + "s");
+        return String.join(" ", args);
+    }
+
+    /** Shell command closing the master connections of a control directory and removing it */
+    public static String buildCloseCmd(String controlDir) {
+        return "for s in " + controlDir + "/*; do [ -S \"$s\" ] && ssh -S \"$s\" -O exit placeholder 2>/dev/null; "
+                + "done; rm -rf " + controlDir;
+    }
+}
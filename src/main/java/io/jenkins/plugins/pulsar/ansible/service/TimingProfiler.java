@@ -0,0 +1,168 @@
+package io.jenkins.plugins.pulsar.ansible.service;
+
+import hudson.XmlFile;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import io.jenkins.plugins.pulsar.ansible.AnsibleProjectsGlobalConfiguration;
+import io.jenkins.plugins.pulsar.ansible.action.AnsibleTimingAction;
+import io.jenkins.plugins.pulsar.ansible.action.AnsibleTimingAction.PlaybookTiming;
+import io.jenkins.plugins.pulsar.ansible.action.AnsibleTimingAction.Regression;
+import io.jenkins.plugins.pulsar.ansible.action.AnsibleTimingAction.TaskTiming;
+import io.jenkins.plugins.pulsar.ansible.model.DurationHistogram;
+import io.jenkins.plugins.pulsar.ansible.model.PlaybookResult;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Turns playbook results into per-task and per-role timings, compares them against a rolling
+ * baseline of the job and playbook, and records both on the build. The baseline keeps one
+ * {@link DurationHistogram} per task and role in a file next to the job's builds.
+ */
+public class TimingProfiler {
+    private static final Logger LOGGER = Logger.getLogger(TimingProfiler.class.getName());
+
+    private static final String BASELINE_FILE = "pulsar-timing-baseline.xml";
+    // Slowest tasks kept on the build, roles are always kept in full
+    private static final int MAX_TASKS_PER_BUILD = 20;
+    // Baseline samples needed before a task can be flagged
+    private static final int MIN_SAMPLES = 5;
+    // Differences below this are noise, however large relative to the baseline
+    private static final long MIN_REGRESSION_MILLIS = 1000;
+
+    private TimingProfiler() {}
+
+    /** Record the timings of a finished playbook on the build, logging tasks and roles that regressed */
+    public static void record(Run<?, ?> run, PlaybookResult result, TaskListener listener) {
+        // Check mode skips most of the work, its timings say nothing about real runs
+        if (result.getTasks().isEmpty() || result.isCheckOnly()) {
+            return;
+        }
+
+        Map<String, Long> tasks = new LinkedHashMap<>();
+        Map<String, String> taskRoles = new HashMap<>();
+        Map<String, Long> roles = new LinkedHashMap<>();
+        for (PlaybookResult.TaskResult task : result.getTasks()) {
+            String key = task.getPlay() + " / " + task.getName();
+            tasks.put(key, task.getMaxDurationMillis());
+            taskRoles.put(key, task.getRole());
+            roles.merge(task.getRole() != null ? task.getRole() : "(playbook)", task.getMaxDurationMillis(), Long::sum);
+        }
+
+        List<Regression> regressions;
+        try {
+            regressions = compareAndUpdate(run.getParent(), result, tasks, roles);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to update timing baseline of " + run.getParent().getFullName(), e);
+            regressions = new ArrayList<>();
+        }
+
+        List<TaskTiming> slowest = new ArrayList<>();
+        tasks.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(MAX_TASKS_PER_BUILD)
+                .forEach(e -> slowest.add(new TaskTiming(e.getKey(), taskRoles.get(e.getKey()), e.getValue())));
+
+        Map<String, Long> sortedRoles = new LinkedHashMap<>();
+        roles.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .forEach(e -> sortedRoles.put(e.getKey(), e.getValue()));
+
+        for (Regression regression : regressions) {
+            listener.getLogger()
+                    .println("Timing regression in " + result.getPlaybook() + ": " + regression.getKind() + " "
+                            + regression.getName() + " took " + regression.getMillis() + " ms, baseline ~"
+                            + regression.getBaselineMillis() + " ms");
+        }
+
+        try {
+            AnsibleTimingAction.record(
+                    run,
+                    new PlaybookTiming(
+                            result.getPlaybook(),
+                            result.getEnvName(),
+                            result.getDurationMillis(),
+                            sortedRoles,
+                            slowest,
+                            regressions));
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to save timing profile of " + run.getFullDisplayName(), e);
+        }
+    }
+
+    /** Flag durations beyond the threshold over the baseline median, then add them to the baseline */
+    private static synchronized List<Regression> compareAndUpdate(
+            Job<?, ?> job, PlaybookResult result, Map<String, Long> tasks, Map<String, Long> roles)
+            throws IOException {
+        XmlFile file = new XmlFile(new File(job.getRootDir(), BASELINE_FILE));
+        Baseline baseline = file.exists() ? (Baseline) file.read() : new Baseline();
+        PlaybookBaseline playbook =
+                baseline.playbooks.computeIfAbsent(result.getPlaybook(), k -> new PlaybookBaseline());
+
+        int percent = AnsibleProjectsGlobalConfiguration.get().getTimingRegressionPercent();
+        List<Regression> regressions = new ArrayList<>();
+        if (percent > 0) {
+            compare("role", roles, playbook.roles, percent, regressions);
+            compare("task", tasks, playbook.tasks, percent, regressions);
+        }
+        regressions.sort(Comparator.comparingLong(r -> r.getBaselineMillis() - r.getMillis()));
+
+        // Failed runs stop early or hang on timeouts, either way they would skew the baseline
+        if (result.getExitCode() == 0) {
+            update(tasks, playbook.tasks);
+            update(roles, playbook.roles);
+            file.write(baseline);
+        }
+        return regressions;
+    }
+
+    private static void compare(
+            String kind,
+            Map<String, Long> durations,
+            Map<String, DurationHistogram> histograms,
+            int percent,
+            List<Regression> regressions) {
+        for (Map.Entry<String, Long> entry : durations.entrySet()) {
+            DurationHistogram histogram = histograms.get(entry.getKey());
+            if (histogram == null || histogram.getCount() < MIN_SAMPLES) {
+                continue;
+            }
+            long median = histogram.quantile(0.5);
+            long millis = entry.getValue();
+            if (millis - median >= MIN_REGRESSION_MILLIS && millis * 100 > median * (100L + percent)) {
+                regressions.add(new Regression(kind, entry.getKey(), millis, median));
+            }
+        }
+    }
+
+    private static void update(Map<String, Long> durations, Map<String, DurationHistogram> histograms) {
+        for (Map.Entry<String, Long> entry : durations.entrySet()) {
+            DurationHistogram histogram = histograms.get(entry.getKey());
+            if (histogram == null && histograms.size() >= PlaybookBaseline.MAX_ENTRIES) {
+                continue;
+            }
+            histograms.computeIfAbsent(entry.getKey(), k -> new DurationHistogram()).add(entry.getValue());
+        }
+    }
+
+    /** Rolling baseline of a job, per playbook */
+    static class Baseline {
+        private final Map<String, PlaybookBaseline> playbooks = new LinkedHashMap<>();
+    }
+
+    static class PlaybookBaseline {
+        // Renamed or removed tasks stay in the baseline, so cap how many it can hold
+        private static final int MAX_ENTRIES = 2000;
+
+        private final Map<String, DurationHistogram> tasks = new LinkedHashMap<>();
+        private final Map<String, DurationHistogram> roles = new LinkedHashMap<>();
+    }
+}
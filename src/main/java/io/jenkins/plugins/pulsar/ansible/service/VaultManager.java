@@ -8,9 +8,11 @@ import hudson.model.TaskListener;
 import hudson.util.Secret;
 import io.jenkins.plugins.pulsar.ansible.model.AnsibleVault;
 import io.jenkins.plugins.pulsar.container.service.ContainerManager;
-import java.io.ByteArrayInputStream;
+import io.jenkins.plugins.pulsar.container.service.FileBundle;
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import jenkins.security.HMACConfidentialKey;
 import org.jenkinsci.plugins.plaincredentials.StringCredentials;
 
 /**
@@ -20,17 +22,26 @@ import org.jenkinsci.plugins.plaincredentials.StringCredentials;
 public class VaultManager implements Serializable {
     private static final long serialVersionUID = 1L;
 
+    // Keyed with a secret of this Jenkins instance, so a stored digest cannot be used to guess a password
+    private static final HMACConfidentialKey SECRET_DIGEST =
+            new HMACConfidentialKey(VaultManager.class, "secretDigest");
+
     private final String vaultDir;
     private final ContainerManager container;
     private final Map<String, AnsibleVault> setupVaults; // vaultId -> AnsibleVault
 
     public VaultManager(ContainerManager container) {
         this.container = container;
-        this.vaultDir = "/ansible/vaults";
-        this.setupVaults = new HashMap<>();
+        // Docker backs /dev/shm with tmpfs
+        this.vaultDir = "/dev/shm/pulsar-vaults";
+        // Read by playbook runs while another build of the shared context sets up its vaults
+        this.setupVaults = new ConcurrentHashMap<>();
     }
 
-    /** Setup vault files for the given vaults */
+    /**
+     * Setup vault files for the given vaults. Password files of all vaults not yet set up are written with
+     * a single exec into a tmpfs directory, so they never reach the container's disk or a snapshot of it.
+     */
     public void setupVaultFiles(List<AnsibleVault> vaults, Run<?, ?> run, Launcher launcher, TaskListener listener)
             throws Exception {
 
@@ -39,53 +50,40 @@ public class VaultManager implements Serializable {
             return;
         }
 
-        // Create vault directory
-        container.execute("mkdir -p " + vaultDir, launcher, listener);
-
-        // Setup each vault
+        FileBundle bundle = new FileBundle();
+        List<AnsibleVault> pending = new ArrayList<>();
         for (AnsibleVault vault : vaults) {
-            if (vault.getCredentialId() != null
-                    && !vault.getCredentialId().trim().isEmpty()) {
-                if (!setupVaults.containsKey(vault.getId())) {
-                    setupVaultFile(vault, run, launcher, listener);
-                    setupVaults.put(vault.getId(), vault);
-                }
+            if (vault.getCredentialId() == null
+                    || vault.getCredentialId().trim().isEmpty()
+                    || setupVaults.containsKey(vault.getId())) {
+                continue;
             }
-        }
-
-        listener.getLogger().println("Vault setup completed - " + setupVaults.size() + " vaults available");
-    }
 
-    /** Setup a single vault file using the rich AnsibleVault object */
-    private void setupVaultFile(AnsibleVault vault, Run<?, ?> run, Launcher launcher, TaskListener listener)
-            throws Exception {
-
-        // Get credential using the vault's credentialId
-        String vaultPassword = getSecretCredential(vault.getCredentialId(), run);
-        if (vaultPassword == null) {
-            listener.getLogger().println("Warning: Vault credential not found: " + vault.getCredentialId());
-            return;
+            // Get credential using the vault's credentialId
+            String vaultPassword = getSecretCredential(vault.getCredentialId(), run);
+            if (vaultPassword == null) {
+                listener.getLogger().println("Warning: Vault credential not found: " + vault.getCredentialId());
+                continue;
+            }
+            bundle.add(getVaultFilePath(vault), vaultPassword);
+            pending.add(vault);
         }
 
-        String vaultFilePath = getVaultFilePath(vault);
-
-        // Command that reads from stdin and writes to file with secure permissions
-        String secureWriteCmd = String.format("umask 077 && cat > %s && chmod 600 %s", vaultFilePath, vaultFilePath);
-
-        // Create input stream with vault password
-        ByteArrayInputStream passwordInput = new ByteArrayInputStream(vaultPassword.getBytes());
-
-        // Execute securely with stdin - password not visible in logs or process list
-        int result = container.execute(secureWriteCmd, null, null, passwordInput, launcher, listener);
-
-        if (result == 0) {
+        // Passwords travel in the exec's stdin, not visible in logs or the process list
+        int result = container.writeFiles(bundle, launcher, listener);
+        if (result != 0) {
+            throw new AbortException("Failed to create vault files for " + pending.size() + " vaults (exit code: "
+                    + result + ")");
+        }
+        for (AnsibleVault vault : pending) {
+            setupVaults.put(vault.getId(), vault);
             listener.getLogger()
                     .println("Vault file created: "
                             + vault.getId()
                             + (vault.getDescription() != null ? " (" + vault.getDescription() + ")" : ""));
-        } else {
-            throw new AbortException("Failed to create vault file: " + vault.getId() + " (exit code: " + result + ")");
         }
+
+        listener.getLogger().println("Vault setup completed - " + setupVaults.size() + " vaults available");
     }
 
     /** Get the file path for a vault object */
@@ -143,8 +141,17 @@ public class VaultManager implements Serializable {
         }
     }
 
+    /** Digest of the vault's current password, to tell when it changed without keeping it; null when not found */
+    public static String getSecretDigest(AnsibleVault vault, Run<?, ?> run) {
+        if (vault.getCredentialId() == null || vault.getCredentialId().trim().isEmpty()) {
+            return null;
+        }
+        String password = getSecretCredential(vault.getCredentialId(), run);
+        return password != null ? SECRET_DIGEST.mac(password) : null;
+    }
+
     /** Get secret credential value */
-    private String getSecretCredential(String credentialId, Run<?, ?> run) {
+    private static String getSecretCredential(String credentialId, Run<?, ?> run) {
         try {
             StringCredentials stringCredential =
                     CredentialsProvider.findCredentialById(credentialId, StringCredentials.class, run);
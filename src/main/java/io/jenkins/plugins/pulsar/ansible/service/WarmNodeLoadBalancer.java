@@ -0,0 +1,159 @@
+package io.jenkins.plugins.pulsar.ansible.service;
+
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.Computer;
+import hudson.model.Job;
+import hudson.model.LoadBalancer;
+import hudson.model.ParametersAction;
+import hudson.model.Queue;
+import hudson.model.Run;
+import hudson.model.queue.MappingWorksheet;
+import hudson.model.queue.MappingWorksheet.ExecutorChunk;
+import hudson.model.queue.MappingWorksheet.Mapping;
+import io.jenkins.plugins.pulsar.ansible.AnsibleProjectsGlobalConfiguration;
+import io.jenkins.plugins.pulsar.ansible.model.AnsibleProject;
+import io.jenkins.plugins.pulsar.ansible.steps.AnsibleContext;
+import io.jenkins.plugins.pulsar.container.service.ContainerManager;
+import io.jenkins.plugins.pulsar.deployment.DeploymentJobManager;
+import io.jenkins.plugins.pulsar.deployment.model.DeploymentTarget;
+import io.jenkins.plugins.pulsar.shared.LaunchHelper;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+
+/**
+ * Load balancer steering deployment builds toward nodes that already hold a warm Ansible context or
+ * exec container for the build's project and ref. Nodes are scored by warm state minus current load;
+ * tasks that are not deployment builds, or have no warm candidate, are left to the wrapped balancer.
+ */
+public class WarmNodeLoadBalancer extends LoadBalancer {
+    private static final Logger LOGGER = Logger.getLogger(WarmNodeLoadBalancer.class.getName());
+
+    private static final double CONTEXT_SCORE = 4;
+    private static final double PROJECT_SCORE = 2;
+    private static final double CONTAINER_SCORE = 1;
+
+    private final LoadBalancer fallback;
+
+    WarmNodeLoadBalancer(LoadBalancer fallback) {
+        this.fallback = fallback;
+    }
+
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void install() {
+        Queue queue = Jenkins.get().getQueue();
+        LoadBalancer current = queue.getLoadBalancer();
+        if (!(current instanceof WarmNodeLoadBalancer)) {
+            queue.setLoadBalancer(new WarmNodeLoadBalancer(current));
+        }
+    }
+
+    @Override
+    public Mapping map(Queue.Task task, MappingWorksheet worksheet) {
+        try {
+            Mapping mapping = mapToWarmNode(task, worksheet);
+            if (mapping != null) {
+                return mapping;
+            }
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.FINE, "Warm node scoring failed for " + task.getFullDisplayName(), e);
+        }
+        return fallback.map(task, worksheet);
+    }
+
+    private Mapping mapToWarmNode(Queue.Task task, MappingWorksheet worksheet) {
+        if (!AnsibleProjectsGlobalConfiguration.get().isWarmNodeAffinity() || worksheet.works.size() != 1) {
+            return null;
+        }
+        DeploymentTarget target = resolveTarget(task);
+        if (target == null) {
+            return null;
+        }
+
+        List<ExecutorChunk> chunks = new ArrayList<>(worksheet.works(0).applicableExecutorChunks());
+        Map<ExecutorChunk, Double> scores = new HashMap<>();
+        boolean anyWarm = false;
+        for (ExecutorChunk chunk : chunks) {
+            double warmth = warmth(LaunchHelper.getNodeName(chunk.computer), target);
+            anyWarm |= warmth > 0;
+            scores.put(chunk, warmth - load(chunk.computer));
+        }
+        if (!anyWarm) {
+            return null;
+        }
+
+        chunks.sort(Comparator.comparingDouble((ExecutorChunk chunk) -> scores.get(chunk)).reversed());
+        for (ExecutorChunk chunk : chunks) {
+            Mapping mapping = worksheet.new Mapping();
+            if (chunk.canAccept(worksheet.works(0))) {
+                mapping.assign(0, chunk);
+                if (mapping.isCompletelyValid()) {
+                    LOGGER.fine("Mapped " + task.getFullDisplayName() + " to warm node " + chunk.computer.getName());
+                    return mapping;
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Deployment target of the build owning the task, e.g. the build running a node block */
+    private static DeploymentTarget resolveTarget(Queue.Task task) {
+        Queue.Task owner = task.getOwnerTask();
+        if (!(owner instanceof Job<?, ?> job)) {
+            return null;
+        }
+        Queue.Executable executable = task.getOwnerExecutable();
+        if (!(executable instanceof Run<?, ?> run)) {
+            return null;
+        }
+        ParametersAction parameters = run.getAction(ParametersAction.class);
+        return DeploymentJobManager.resolveTarget(job, parameters != null ? parameters.getParameters() : null);
+    }
+
+    /**
+     * How much setup a node would save for the target: a context for the ref (or the commit it was
+     * resolved to), any context of the project, or a running container of its exec environment image.
+     */
+    public static double warmth(String nodeName, DeploymentTarget target) {
+        AnsibleProject project = AnsibleProjectsGlobalConfiguration.get().getProjectById(target.getProjectId());
+        if (project == null) {
+            return 0;
+        }
+
+        double warmth = 0;
+        for (AnsibleContext context : AnsibleContext.getActiveContexts()) {
+            if (context.isKilled()
+                    || !nodeName.equals(context.getNodeName())
+                    || !target.getProjectId().equals(context.getProjectId())) {
+                continue;
+            }
+            boolean sameRef =
+                    target.getRef().equals(context.getRef()) || target.getRef().equals(context.getCommit());
+            warmth = Math.max(warmth, sameRef ? CONTEXT_SCORE : PROJECT_SCORE);
+        }
+
+        if (warmth == 0) {
+            for (ContainerManager container : ContainerManager.getActiveContainers()) {
+                if (!container.isKilled()
+                        && nodeName.equals(container.getNodeName())
+                        && container.getImage().equals(project.getExecEnvImage())) {
+                    warmth = CONTAINER_SCORE;
+                    break;
+                }
+            }
+        }
+        return warmth;
+    }
+
+    /** Busy share of the node executors, between 0 and 1 */
+    public static double load(Computer computer) {
+        int executors = computer.countExecutors();
+        return executors > 0 ? (double) computer.countBusy() / executors : 1;
+    }
+}
@@ -1,22 +1,44 @@
 package io.jenkins.plugins.pulsar.ansible.steps;
 
 import hudson.Launcher;
+import hudson.model.Computer;
 import hudson.model.Run;
 import hudson.model.TaskListener;
 import io.jenkins.plugins.pulsar.ansible.AnsibleProjectsGlobalConfiguration;
 import io.jenkins.plugins.pulsar.ansible.model.AnsibleProject;
 import io.jenkins.plugins.pulsar.ansible.model.AnsibleVault;
+import io.jenkins.plugins.pulsar.ansible.model.PlaybookResult;
+import io.jenkins.plugins.pulsar.ansible.service.AnsibleContextJanitor;
 import io.jenkins.plugins.pulsar.ansible.service.AnsibleEnvironmentService;
 import io.jenkins.plugins.pulsar.ansible.service.AnsiblePlaybookCommandBuilder;
+import io.jenkins.plugins.pulsar.ansible.service.DependencyCache;
+import io.jenkins.plugins.pulsar.ansible.service.FactCache;
+import io.jenkins.plugins.pulsar.ansible.service.GitRefResolver;
+import io.jenkins.plugins.pulsar.ansible.service.InventorySharder;
+import io.jenkins.plugins.pulsar.ansible.service.PlaybookEventParser;
+import io.jenkins.plugins.pulsar.ansible.service.ProjectCheckoutCommandBuilder;
+import io.jenkins.plugins.pulsar.ansible.service.SnapshotCache;
+import io.jenkins.plugins.pulsar.ansible.service.SshControlPaths;
 import io.jenkins.plugins.pulsar.ansible.service.VaultManager;
 import io.jenkins.plugins.pulsar.container.service.ContainerManager;
+import io.jenkins.plugins.pulsar.container.service.FileBundle;
 import io.jenkins.plugins.pulsar.container.steps.SharedContainerStep;
 import io.jenkins.plugins.pulsar.shared.LaunchHelper;
+import io.jenkins.plugins.pulsar.shared.PrefixedTaskListener;
 import io.jenkins.plugins.pulsar.ssh.service.SshAgent;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import org.jenkinsci.plugins.workflow.steps.StepContext;
 
 /**
@@ -26,9 +48,26 @@ import org.jenkinsci.plugins.workflow.steps.StepContext;
 public class AnsibleContext implements Serializable {
     private static final long serialVersionUID = 1L;
 
+    private static final transient Logger LOGGER = Logger.getLogger(AnsibleContext.class.getName());
+
+    private static final int MIRROR_SYNC_TIMEOUT_SECONDS = 1800;
+
+    // Callback plugin streaming playbook events, see PlaybookEventParser
+    private static final String EVENT_CALLBACK_RESOURCE =
+            "/io/jenkins/plugins/pulsar/ansible/callback/pulsar_events.py";
+    private static final String EVENT_CALLBACK_DIR = "/tmp/pulsar-callbacks";
+    // Extra vars and host lists of single playbook runs; extra vars may hold secrets, so tmpfs like the vaults
+    private static final String RUN_FILES_DIR = "/dev/shm/pulsar-run";
+
     // Static registry of active contexts per node
     private static final Map<String, AnsibleContext> activeContexts = new ConcurrentHashMap<>();
 
+    // Contexts being pre-warmed outside the registry lock, completed once registered (or failed)
+    private static final Map<String, CompletableFuture<Void>> prewarming = new ConcurrentHashMap<>();
+
+    // Evicted contexts whose checkout is still being deleted, completed once it is gone
+    private static final Map<String, CompletableFuture<Void>> evicting = new ConcurrentHashMap<>();
+
     private final String projectId;
     private final String ref;
     private final AnsibleProject project;
@@ -36,6 +75,9 @@ public class AnsibleContext implements Serializable {
     private final String nodeName;
     private final String contextKey;
 
+    // Commit the ref resolved to, null when resolution failed (the context is then keyed by ref)
+    private final String commit;
+
     // Managed resources
     private ContainerManager execEnv;
     private SshAgent sshAgent;
@@ -46,18 +88,34 @@ public class AnsibleContext implements Serializable {
     private volatile boolean isKilled = false;
     private boolean initialized = false;
 
+    // When the context was pre-warmed for a queued build, 0 once a build used it
+    private volatile long prewarmedAt = 0;
+    // Last time a build acquired or released the context, for idle and LRU eviction
+    private volatile long lastUsed = System.currentTimeMillis();
+
+    // Whether the event callback plugin has been written into the exec container
+    private volatile boolean eventCallbackInstalled = false;
+    // Whether ansible.cfg uses the fact cache on the node volume
+    private volatile boolean factCacheManaged = false;
+    // SSH control socket directories of the environments this context ran playbooks for
+    private final Set<String> sshControlDirs = ConcurrentHashMap.newKeySet();
+    // Dependency set on the node volume with the project's collections, roles and Python packages
+    private volatile String dependencyDir;
+
     // Services
     private final transient AnsibleEnvironmentService envService;
 
     private AnsibleContext(
             String projectId,
             String ref,
+            String commit,
             AnsibleProject project,
             String nodeName,
             String contextKey,
             String execEnvProjectRoot) {
         this.projectId = projectId;
         this.ref = ref;
+        this.commit = commit;
         this.project = project;
         this.nodeName = nodeName;
         this.envService = new AnsibleEnvironmentService();
@@ -68,10 +126,42 @@ public class AnsibleContext implements Serializable {
     /** Get or create cached AnsibleContext - similar to ContainerManager.getOrCreate */
     public static AnsibleContext getOrCreate(
             String projectId, String ref, StepContext stepContext, List<String> containerOptions) throws Exception {
+        return getOrCreate(projectId, ref, stepContext, containerOptions, false);
+    }
+
+    /** Get or create cached AnsibleContext, optionally routing container commands through an exec server */
+    public static AnsibleContext getOrCreate(
+            String projectId,
+            String ref,
+            StepContext stepContext,
+            List<String> containerOptions,
+            boolean execServer)
+            throws Exception {
 
         TaskListener listener = stepContext.get(TaskListener.class);
         Launcher launcher = stepContext.get(Launcher.class);
 
+        return getOrCreate(
+                projectId,
+                ref,
+                LaunchHelper.getNodeName(stepContext),
+                containerOptions,
+                execServer,
+                launcher,
+                listener);
+    }
+
+    /** Get or create cached AnsibleContext on a given node, e.g. one other than the node the build runs on */
+    public static AnsibleContext getOrCreate(
+            String projectId,
+            String ref,
+            String nodeName,
+            List<String> containerOptions,
+            boolean execServer,
+            Launcher launcher,
+            TaskListener listener)
+            throws Exception {
+
         // Find the project
         AnsibleProjectsGlobalConfiguration config = AnsibleProjectsGlobalConfiguration.get();
         AnsibleProject project = config.getProjectById(projectId);
@@ -84,60 +174,342 @@ public class AnsibleContext implements Serializable {
             throw new IllegalArgumentException("Version information required");
         }
 
-        // Get node name
-        String nodeName = LaunchHelper.getNodeName(stepContext);
-        String contextKey = String.format("%s:%s:%s", nodeName, projectId, ref);
+        // Key by commit so refs pointing at the same commit share a context and checkout
+        String commit = resolveCommit(project, ref, listener);
+        String version = commit != null ? commit : ref;
+        String contextKey = getContextKey(nodeName, project, version);
+
+        while (true) {
+            // A pre-warm of this context is still setting up: wait for it rather than duplicating the work
+            CompletableFuture<Void> pending = prewarming.get(contextKey);
+            if (pending != null) {
+                listener.getLogger().println("Waiting for pre-warmed Ansible context: " + projectId);
+                pending.get();
+            }
+            // A new context would check out into the directory an eviction is deleting
+            CompletableFuture<Void> removing = evicting.get(contextKey);
+            if (removing != null) {
+                listener.getLogger().println("Waiting for evicted Ansible context to be removed: " + projectId);
+                removing.get();
+            }
+
+            synchronized (AnsibleContext.class) {
+                if (prewarming.containsKey(contextKey) || evicting.containsKey(contextKey)) {
+                    continue;
+                }
+
+                AnsibleContext existing = activeContexts.get(contextKey);
+                if (existing != null && existing.isValid(launcher, listener)) {
+                    existing.referenceCount++;
+                    existing.lastUsed = System.currentTimeMillis();
+                    if (existing.prewarmedAt > 0) {
+                        existing.prewarmedAt = 0;
+                        listener.getLogger().println("Reusing pre-warmed Ansible context: " + projectId);
+                    } else {
+                        listener.getLogger().println("Reusing existing Ansible context: " + projectId);
+                    }
+                    return existing;
+                }
+
+                // Create new context
+                AnsibleContext context = newContext(projectId, ref, commit, project, nodeName, version);
+
+                context.initialize(containerOptions, execServer, launcher, listener);
+
+                activeContexts.put(contextKey, context);
+                AnsibleContextJanitor.get().checkNode(nodeName);
+
+                return context;
+            }
+        }
+    }
+
+    /**
+     * Prepare a context on a node ahead of the build expected to use it, returns false when it already
+     * exists or is being prepared. The context starts unreferenced and is discarded if no build picks it up.
+     */
+    public static boolean prewarm(
+            String projectId, String ref, String nodeName, Launcher launcher, TaskListener listener)
+            throws Exception {
+        AnsibleProject project = AnsibleProjectsGlobalConfiguration.get().getProjectById(projectId);
+        if (project == null) {
+            throw new IllegalArgumentException("Ansible project not found: " + projectId);
+        }
+
+        String commit = resolveCommit(project, ref, listener);
+        String version = commit != null ? commit : ref;
+        String contextKey = getContextKey(nodeName, project, version);
 
+        CompletableFuture<Void> done = new CompletableFuture<>();
         synchronized (AnsibleContext.class) {
             AnsibleContext existing = activeContexts.get(contextKey);
             if (existing != null && existing.isValid(launcher, listener)) {
-                existing.referenceCount++;
-                listener.getLogger().println("Reusing existing Ansible context: " + projectId);
-                return existing;
+                return false;
+            }
+            if (evicting.containsKey(contextKey) || prewarming.putIfAbsent(contextKey, done) != null) {
+                return false;
             }
+        }
 
-            // Create new context
-            String sRef = ref.replaceAll("[^a-zA-Z0-9\\-\\.]", "_");
-            String projectDir = String.format("/%s/%s", projectId, sRef);
-            AnsibleContext context = new AnsibleContext(projectId, ref, project, nodeName, contextKey, projectDir);
+        // Set up outside the registry lock so builds on other contexts are not held up by a speculation
+        try {
+            AnsibleContext context = newContext(projectId, ref, commit, project, nodeName, version);
+            context.referenceCount = 0;
+            context.prewarmedAt = System.currentTimeMillis();
+            context.initialize(null, false, launcher, listener);
 
-            context.initialize(stepContext, containerOptions, launcher, listener);
+            synchronized (AnsibleContext.class) {
+                activeContexts.put(contextKey, context);
+            }
+            AnsibleContextJanitor.get().checkNode(nodeName);
+            return true;
+        } finally {
+            prewarming.remove(contextKey, done);
+            done.complete(null);
+        }
+    }
 
-            activeContexts.put(contextKey, context);
+    /** Registry key of a context; shallow, partial or sparse checkouts get their own context */
+    private static String getContextKey(String nodeName, AnsibleProject project, String version) {
+        return String.format("%s:%s:%s", nodeName, project.getId(), version) + getModeSuffix(project);
+    }
 
-            return context;
-        }
+    private static String getModeSuffix(AnsibleProject project) {
+        String modeKey = newCheckoutCommand(project).getModeKey();
+        return modeKey.isEmpty() ? "" : "-" + modeKey;
+    }
+
+    private static AnsibleContext newContext(
+            String projectId, String ref, String commit, AnsibleProject project, String nodeName, String version) {
+        String sRef = version.replaceAll("[^a-zA-Z0-9\\-\\.]", "_");
+        String projectDir = String.format("/%s/%s", projectId, sRef) + getModeSuffix(project);
+        return new AnsibleContext(
+                projectId, ref, commit, project, nodeName, getContextKey(nodeName, project, version), projectDir);
     }
 
     /** Initialize the full Ansible environment */
     private void initialize(
-            StepContext stepContext, List<String> containerOptions, Launcher launcher, TaskListener listener)
+            List<String> containerOptions,
+            boolean execServer,
+            Launcher launcher,
+            TaskListener listener)
             throws Exception {
 
         if (initialized) return;
 
         listener.getLogger().println("Setting up Ansible environment...");
+        long start = System.currentTimeMillis();
+        Map<String, Long> timings = Collections.synchronizedMap(new LinkedHashMap<>());
+
+        String baseImage = project.getExecEnvImage();
+        String snapshotTag = project.isSnapshotCache() && commit != null
+                ? SnapshotCache.getSnapshotTag(baseImage, projectId, commit, projectDir)
+                : null;
+
+        // The agents dir must exist before docker mounts it, or docker creates it owned by root
+        LaunchHelper.executeQuietlyDiscardOutput(
+                launcher, Arrays.asList("mkdir", "-p", SshAgent.getSshAgentsDir()), 10, listener);
+
+        // 1. Independent phases run concurrently: SSH agent, exec container, node mirror warm-up
+        CompletableFuture<SshAgent> agentPhase = runPhase("ssh-agent", timings, () -> {
+            SshAgent agent = SshAgent.getInstance(nodeName);
+            agent.start(launcher, listener);
+            return agent;
+        });
+        CompletableFuture<ExecEnvStart> containerPhase = runPhase(
+                "container",
+                timings,
+                () -> startExecEnv(containerOptions, execServer, snapshotTag, launcher, listener));
+        CompletableFuture<Void> mirrorPhase = AnsibleProjectsGlobalConfiguration.get().isGitMirrors()
+                        && isHttpRepository(project.getRepository())
+                ? runPhase("mirror", timings, () -> {
+                    warmMirror(launcher, listener);
+                    return null;
+                })
+                : CompletableFuture.completedFuture(null);
+
+        // Wait for every phase before failing, so nothing is still starting in the background
+        CompletableFuture.allOf(agentPhase, containerPhase, mirrorPhase)
+                .exceptionally(e -> null)
+                .get();
+        ExecEnvStart started = awaitPhase(containerPhase);
+        try {
+            this.sshAgent = awaitPhase(agentPhase);
+            awaitPhase(mirrorPhase);
 
-        // 1. Start SSH agent
-        this.sshAgent = SshAgent.getInstance(nodeName);
-        this.sshAgent.start(launcher, listener);
+            this.execEnv = started.container;
+            if (sshAgent.getSocketPath() != null) {
+                execEnv.setEnv("SSH_AUTH_SOCK", sshAgent.getSocketPath());
+            }
+            if (started.fromSnapshot && started.fresh) {
+                listener.getLogger().println("Started from environment snapshot " + snapshotTag);
+                SnapshotCache.touch(nodeName, snapshotTag);
+            }
 
-        // 2. Create container with SSH socket mount
-        this.execEnv = spinExecEnv(stepContext, containerOptions, launcher, listener);
+            // 2. Initialize vault manager
+            this.vaultManager = new VaultManager(execEnv);
 
-        // 3. Initialize vault manager
-        this.vaultManager = new VaultManager(execEnv);
+            // 3. Setup project (needs the container, and the mirror when enabled)
+            timePhase("checkout", timings, () -> checkoutProject(launcher, listener));
+            timePhase("config", timings, () -> setupAnsibleConfig(launcher, listener));
+            if (AnsibleProjectsGlobalConfiguration.get().getMaxDependencySetsPerNode() > 0) {
+                timePhase("dependencies", timings, () -> installDependencies(launcher, listener));
+            }
 
-        // 4. Setup project
-        setup(stepContext, launcher, listener);
+            // 4. Snapshot a container this context prepared from scratch, before any secrets are staged
+            if (snapshotTag != null && !started.fromSnapshot && started.fresh) {
+                timePhase("snapshot", timings, () -> {
+                    if (SnapshotCache.create(execEnv, snapshotTag, baseImage, projectId, commit, launcher, listener)) {
+                        SnapshotCache.prune(
+                                nodeName,
+                                AnsibleProjectsGlobalConfiguration.get().getMaxSnapshotsPerNode(),
+                                launcher,
+                                listener);
+                    }
+                });
+            }
+        } catch (Exception e) {
+            // The context is not registered, nothing else would release its container reference
+            started.container.release(false, launcher, listener);
+            throw e;
+        }
 
         initialized = true;
-        listener.getLogger().println("Ansible environment ready");
+        listener.getLogger().println("Ansible environment ready in " + (System.currentTimeMillis() - start) + " ms "
+                + formatTimings(timings));
+    }
+
+    /** Look up the snapshot and start (or reuse) the exec container */
+    private ExecEnvStart startExecEnv(
+            List<String> containerOptions,
+            boolean execServer,
+            String snapshotTag,
+            Launcher launcher,
+            TaskListener listener)
+            throws Exception {
+        boolean fromSnapshot = snapshotTag != null && SnapshotCache.exists(snapshotTag, launcher, listener);
+        String runImage = fromSnapshot ? snapshotTag : project.getExecEnvImage();
+        ContainerManager container = spinExecEnv(containerOptions, execServer, runImage, launcher, listener);
+        return new ExecEnvStart(container, fromSnapshot, container.claimFresh());
+    }
+
+    /**
+     * Bring the node mirror up to date from a short-lived side container while the exec container boots.
+     * The side container has no SSH agent or SSH config, so this is only done for http(s) repositories.
+     */
+    private void warmMirror(Launcher launcher, TaskListener listener) throws Exception {
+        String cacheRoot = AnsibleProjectsGlobalConfiguration.get().getCacheRoot();
+        String syncCmd = newCheckoutCommand(project)
+                .ref(ref)
+                .commit(commit)
+                .projectDir(projectDir)
+                .cacheVolume(cacheRoot)
+                .buildMirrorSyncCmd();
+
+        List<String> dockerCmd = Arrays.asList(
+                "docker",
+                "run",
+                "--rm",
+                "-v",
+                cacheRoot + ":" + cacheRoot,
+                "--entrypoint",
+                "/bin/sh",
+                project.getExecEnvImage(),
+                "-c",
+                syncCmd);
+
+        // Best effort: the checkout syncs the mirror itself if this did not
+        if (LaunchHelper.executeQuietlyDiscardOutput(launcher, dockerCmd, MIRROR_SYNC_TIMEOUT_SECONDS, listener)
+                != 0) {
+            listener.getLogger().println("Mirror warm-up failed, the checkout will sync the mirror itself");
+        }
+    }
+
+    private static boolean isHttpRepository(String repository) {
+        return repository != null && (repository.startsWith("https://") || repository.startsWith("http://"));
+    }
+
+    private static <T> CompletableFuture<T> runPhase(String name, Map<String, Long> timings, Callable<T> phase) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Computer.threadPoolForRemoting.submit(() -> {
+            long start = System.currentTimeMillis();
+            try {
+                future.complete(phase.call());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            } finally {
+                timings.put(name, System.currentTimeMillis() - start);
+            }
+        });
+        return future;
+    }
+
+    private static <T> T awaitPhase(CompletableFuture<T> phase) throws Exception {
+        try {
+            return phase.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    private static void timePhase(String name, Map<String, Long> timings, Phase phase) throws Exception {
+        long start = System.currentTimeMillis();
+        try {
+            phase.run();
+        } finally {
+            timings.put(name, System.currentTimeMillis() - start);
+        }
+    }
+
+    private static String formatTimings(Map<String, Long> timings) {
+        StringJoiner joiner = new StringJoiner(", ", "(", ")");
+        synchronized (timings) {
+            timings.forEach((name, millis) -> joiner.add(name + " " + millis + " ms"));
+        }
+        return joiner.toString();
+    }
+
+    @FunctionalInterface
+    private interface Phase {
+        void run() throws Exception;
+    }
+
+    /** Exec container obtained during initialization */
+    private static class ExecEnvStart {
+        private final ContainerManager container;
+        private final boolean fromSnapshot;
+        private final boolean fresh;
+
+        ExecEnvStart(ContainerManager container, boolean fromSnapshot, boolean fresh) {
+            this.container = container;
+            this.fromSnapshot = fromSnapshot;
+            this.fresh = fresh;
+        }
+    }
+
+    /** Resolve the ref to a commit, null when it cannot be resolved (the context falls back to the ref) */
+    private static String resolveCommit(AnsibleProject project, String ref, TaskListener listener) {
+        String resolved = null;
+        try {
+            resolved = GitRefResolver.resolveCommit(project.getRepository(), ref);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to resolve " + project.getRepository() + "@" + ref, e);
+        }
+        if (resolved == null) {
+            listener.getLogger().println("Could not resolve " + ref + " to a commit, using the ref as is");
+        } else if (!resolved.equals(ref)) {
+            listener.getLogger().println("Resolved " + ref + " to commit " + resolved);
+        }
+        return resolved;
     }
 
     /** Create or get shared container */
     private ContainerManager spinExecEnv(
-            StepContext stepContext, List<String> containerOptions, Launcher launcher, TaskListener listener)
+            List<String> containerOptions,
+            boolean execServer,
+            String runImage,
+            Launcher launcher,
+            TaskListener listener)
             throws Exception {
         List<String> finalOpts = new ArrayList<>();
         if (containerOptions != null) {
@@ -148,15 +520,16 @@ public class AnsibleContext implements Serializable {
         String sshAgentsDir = SshAgent.getSshAgentsDir();
         finalOpts.add(String.format("-v %s:%s", sshAgentsDir, sshAgentsDir));
 
-        SharedContainerStep containerStep = createContainerStep(finalOpts);
-        var container = ContainerManager.getOrCreate(nodeName, project.getExecEnv(), containerStep, launcher, listener);
-
-        // Set SSH_AUTH_SOCK after agent is started
-        if (sshAgent != null && sshAgent.getSocketPath() != null) {
-            container.setEnv("SSH_AUTH_SOCK", sshAgent.getSocketPath());
+        // Node cache volume, shared by all exec containers on the node
+        AnsibleProjectsGlobalConfiguration config = AnsibleProjectsGlobalConfiguration.get();
+        if (config.needsCacheVolume()) {
+            finalOpts.add(String.format("-v %s:%s", config.getCacheRoot(), config.getCacheRoot()));
         }
 
-        return container;
+        SharedContainerStep containerStep = createContainerStep(finalOpts);
+        containerStep.setExecServer(execServer);
+        return ContainerManager.getOrCreate(
+                nodeName, project.getExecEnvImage(), runImage, containerStep, launcher, listener);
     }
 
     /** Ensure SSH agent is running, restart if needed */
@@ -189,7 +562,7 @@ public class AnsibleContext implements Serializable {
     }
 
     /** Setup SSH agent with all required keys */
-    public void setupEnvSshKeys(Run<?, ?> run, Launcher launcher, TaskListener listener, String envName)
+    public synchronized void setupEnvSshKeys(Run<?, ?> run, Launcher launcher, TaskListener listener, String envName)
             throws Exception {
 
         String envSshCredentialId = envService.getEnvSshCred(projectId, envName);
@@ -206,55 +579,57 @@ public class AnsibleContext implements Serializable {
         }
     }
 
-    /** Setup vault password files - now delegates to VaultManager */
-    public void setupVaultFiles(Run<?, ?> run, Launcher launcher, TaskListener listener, String envName)
+    /** Setup vault password files - now delegates to VaultManager; builds sharing the context set up one at a time */
+    public synchronized void setupVaultFiles(Run<?, ?> run, Launcher launcher, TaskListener listener, String envName)
             throws Exception {
         List<AnsibleVault> envVaults = project.getEnvVaults(envName);
 
         vaultManager.setupVaultFiles(envVaults, run, launcher, listener);
     }
 
-    /** Setup project files (checkout, ansible.cfg) */
-    private void setup(StepContext stepContext, Launcher launcher, TaskListener listener) throws Exception {
-        listener.getLogger().println("Setting up project files...");
-
-        // Checkout project
-        checkoutProject(launcher, listener);
-
-        // Generate and write ansible.cfg
-        setupAnsibleConfig(launcher, listener);
-    }
-
-    /** Checkout project from repository */
+    /** Checkout project from repository, pinned to the resolved commit when known */
     private void checkoutProject(Launcher launcher, TaskListener listener) throws Exception {
-        // One command: try to reuse existing repo, otherwise clone fresh
-        String cmd = String.format(
-                "(cd %s && git remote get-url origin 2>/dev/null | grep -q '%s' && git fetch && git reset --hard %s) || "
-                        + "(rm -rf %s && git clone %s %s && cd %s && git checkout %s)",
-                projectDir,
-                project.getRepository(),
-                ref,
-                projectDir,
-                project.getRepository(),
-                projectDir,
-                projectDir,
-                ref);
+        String checkoutRef = commit != null ? commit : ref;
+
+        AnsibleProjectsGlobalConfiguration config = AnsibleProjectsGlobalConfiguration.get();
+        String cmd = newCheckoutCommand(project)
+                .ref(ref)
+                .commit(commit)
+                .projectDir(projectDir)
+                .cacheVolume(config.isGitMirrors() ? config.getCacheRoot() : null)
+                .buildCmd();
 
         if (execEnv.execute(cmd, launcher, listener) != 0) {
-            throw new Exception("Failed to checkout: " + project.getRepository() + "@" + ref);
+            throw new Exception("Failed to checkout: " + project.getRepository() + "@" + checkoutRef);
         }
 
-        listener.getLogger().println("Project checked out: " + project.getRepository() + "@" + ref);
+        listener.getLogger().println("Project checked out: " + project.getRepository() + "@" + checkoutRef);
+    }
+
+    /** Checkout command for the project with its clone depth, filter and sparse settings */
+    private static ProjectCheckoutCommandBuilder newCheckoutCommand(AnsibleProject project) {
+        return new ProjectCheckoutCommandBuilder()
+                .repository(project.getRepository())
+                .depth(project.getCloneDepth())
+                .filter(project.getCloneFilter())
+                .sparsePatterns(project.getSparseCheckoutPatterns());
     }
 
     /** Setup ansible.cfg file */
     private void setupAnsibleConfig(Launcher launcher, TaskListener listener) throws Exception {
-        String secureWriteCmd = String.format("cat > %s/ansible.cfg", projectDir);
-
-        ByteArrayInputStream configInput =
-                new ByteArrayInputStream(project.getAnsibleConfig().getBytes());
+        // Smart gathering against a fact cache on the node volume, unless the project configures its own
+        String ansibleConfig = project.getAnsibleConfig();
+        AnsibleProjectsGlobalConfiguration config = AnsibleProjectsGlobalConfiguration.get();
+        factCacheManaged = config.getFactCacheTimeoutSeconds() > 0 && !FactCache.isConfiguredIn(ansibleConfig);
+        if (factCacheManaged) {
+            ansibleConfig = FactCache.applyToConfig(
+                    ansibleConfig,
+                    FactCache.defaultDir(config.getCacheRoot(), projectId),
+                    config.getFactCacheTimeoutSeconds());
+        }
 
-        int result = execEnv.execute(secureWriteCmd, null, null, configInput, launcher, listener);
+        FileBundle configFile = new FileBundle().add(projectDir + "/ansible.cfg", ansibleConfig);
+        int result = execEnv.writeFiles(configFile, launcher, listener);
 
         if (result != 0) {
             throw new Exception("Failed to write ansible.cfg file");
@@ -263,6 +638,37 @@ public class AnsibleContext implements Serializable {
         listener.getLogger().println("ansible.cfg configured");
     }
 
+    /** Install the project's requirements into the node dependency cache, or reuse the set with their hash */
+    private void installDependencies(Launcher launcher, TaskListener listener) throws Exception {
+        String requirements =
+                executeAndCapture(DependencyCache.buildReadRequirementsCmd(projectDir), launcher, listener);
+        String hash = DependencyCache.hash(project.getExecEnvImage(), requirements);
+        if (hash == null) {
+            return;
+        }
+
+        AnsibleProjectsGlobalConfiguration config = AnsibleProjectsGlobalConfiguration.get();
+        String dir = DependencyCache.depsDir(config.getCacheRoot(), hash);
+        if (execEnv.execute(DependencyCache.buildReuseCmd(dir), "root", launcher, listener) == 0) {
+            listener.getLogger().println("Reusing cached dependencies " + hash);
+        } else {
+            listener.getLogger().println("Installing dependencies " + hash + " into the node cache...");
+            if (execEnv.execute(DependencyCache.buildInstallCmd(projectDir, dir), "root", launcher, listener) != 0) {
+                throw new Exception("Failed to install the project requirements");
+            }
+            int pruned = execEnv.execute(
+                    DependencyCache.buildPruneCmd(
+                            DependencyCache.depsRoot(config.getCacheRoot()), config.getMaxDependencySetsPerNode()),
+                    "root",
+                    launcher,
+                    listener);
+            if (pruned != 0) {
+                LOGGER.log(Level.FINE, "Failed to prune dependency sets on " + nodeName);
+            }
+        }
+        dependencyDir = dir;
+    }
+
     /** Execute ansible-playbook with all credentials available */
     public int runPlaybook(
             String playbook,
@@ -273,14 +679,250 @@ public class AnsibleContext implements Serializable {
             Launcher launcher,
             TaskListener listener)
             throws Exception {
+        return runPlaybook(playbook, envName, extraVars, options, user, 1, null, launcher, listener);
+    }
 
+    /** Execute ansible-playbook split into host shards, see the overload taking a result */
+    public int runPlaybook(
+            String playbook,
+            String envName,
+            Map<String, Object> extraVars,
+            String options,
+            String user,
+            int shards,
+            Launcher launcher,
+            TaskListener listener)
+            throws Exception {
+        return runPlaybook(playbook, envName, extraVars, options, user, shards, null, launcher, listener);
+    }
+
+    /**
+     * Execute ansible-playbook split into host shards, each a separate process in the exec container
+     * limited to its hosts, so large inventories use more than one controller core. A shard count of
+     * 0 sizes the shards from the container's cores, 1 runs unsharded. Returns the highest exit code.
+     * With a result given, task events of all shards are streamed into it while the playbook runs.
+     */
+    public int runPlaybook(
+            String playbook,
+            String envName,
+            Map<String, Object> extraVars,
+            String options,
+            String user,
+            int shards,
+            PlaybookResult result,
+            Launcher launcher,
+            TaskListener listener)
+            throws Exception {
         ensureInitialized();
 
         if (isKilled) {
             throw new IllegalStateException("AnsibleContext has been killed");
         }
 
-        // Use command builder for clean separation of concerns
+        if (result != null) {
+            installEventCallback(launcher, listener);
+        }
+
+        AnsiblePlaybookCommandBuilder builder = newPlaybookCommand(playbook, envName, extraVars, options, user);
+        List<List<String>> partitions = Collections.emptyList();
+        if (shards != 1 && builder.hasLimitOption()) {
+            listener.getLogger().println("Options already contain --limit, running unsharded");
+        } else if (shards != 1) {
+            List<String> hosts = listHosts(envName, launcher, listener);
+            int shardCount = shards > 0
+                    ? shards
+                    : InventorySharder.autoShardCount(
+                            hosts.size(), parseCores(executeAndCapture("nproc", launcher, listener)));
+            partitions = InventorySharder.partition(hosts, shardCount);
+        }
+
+        if (partitions.size() <= 1) {
+            // Log command summary
+            listener.getLogger().println("=== Executing Ansible Playbook ===");
+            listener.getLogger().println(builder.getSummary());
+
+            FileBundle runFiles = stageRunFiles(builder, null, launcher, listener);
+            try {
+                return executePlaybook(builder, result, launcher, listener);
+            } finally {
+                removeRunFiles(runFiles, launcher, listener);
+            }
+        }
+
+        listener.getLogger()
+                .println("=== Executing Ansible Playbook in " + partitions.size() + " shards ("
+                        + partitions.stream().mapToInt(List::size).sum() + " hosts) ===");
+        listener.getLogger().println(builder.getSummary());
+
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < partitions.size(); i++) {
+            List<String> shardHosts = partitions.get(i);
+            PrefixedTaskListener shardListener =
+                    new PrefixedTaskListener(listener, "[shard " + (i + 1) + "/" + partitions.size() + "] ");
+            futures.add(Computer.threadPoolForRemoting.submit(() -> {
+                long start = System.currentTimeMillis();
+                try {
+                    int shardExit = runPlaybookOnHosts(
+                            playbook, envName, extraVars, options, user, shardHosts, result, launcher, shardListener);
+                    shardListener
+                            .getLogger()
+                            .println("Shard finished with code: " + shardExit + " in "
+                                    + (System.currentTimeMillis() - start) + " ms");
+                    return shardExit;
+                } finally {
+                    shardListener.close();
+                }
+            }));
+        }
+
+        // Shards are independent like hosts of one run: let every shard finish, then aggregate
+        int exitCode = 0;
+        try {
+            for (Future<Integer> future : futures) {
+                try {
+                    exitCode = Math.max(exitCode, future.get());
+                } catch (ExecutionException e) {
+                    listener.getLogger().println("Shard failed: " + e.getCause().getMessage());
+                    exitCode = Math.max(exitCode, 1);
+                }
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw e;
+        }
+        return exitCode;
+    }
+
+    /** Hosts of the environment inventory, as listed by "ansible all --list-hosts" */
+    public List<String> listHosts(String envName, Launcher launcher, TaskListener listener) throws Exception {
+        ensureInitialized();
+
+        String cmd = new AnsiblePlaybookCommandBuilder()
+                .vaultManager(vaultManager)
+                .inventory(getInventoryPath(envName))
+                .projectRoot(projectDir)
+                .buildListHostsCmd("all");
+        return InventorySharder.parseListHosts(executeAndCapture(cmd, launcher, listener));
+    }
+
+    /** Execute ansible-playbook limited to the given hosts, passed as a host file */
+    public int runPlaybookOnHosts(
+            String playbook,
+            String envName,
+            Map<String, Object> extraVars,
+            String options,
+            String user,
+            List<String> hosts,
+            Launcher launcher,
+            TaskListener listener)
+            throws Exception {
+        return runPlaybookOnHosts(playbook, envName, extraVars, options, user, hosts, null, launcher, listener);
+    }
+
+    /** Execute ansible-playbook limited to the given hosts, streaming task events into the result if given */
+    public int runPlaybookOnHosts(
+            String playbook,
+            String envName,
+            Map<String, Object> extraVars,
+            String options,
+            String user,
+            List<String> hosts,
+            PlaybookResult result,
+            Launcher launcher,
+            TaskListener listener)
+            throws Exception {
+        ensureInitialized();
+
+        if (isKilled) {
+            throw new IllegalStateException("AnsibleContext has been killed");
+        }
+
+        AnsiblePlaybookCommandBuilder builder = newPlaybookCommand(playbook, envName, extraVars, options, user);
+        FileBundle runFiles = stageRunFiles(builder, hosts, launcher, listener);
+        try {
+            if (result != null) {
+                installEventCallback(launcher, listener);
+            }
+            return executePlaybook(builder, result, launcher, listener);
+        } finally {
+            removeRunFiles(runFiles, launcher, listener);
+        }
+    }
+
+    /** Execute the playbook command, streaming its task events into the result when one is given */
+    private int executePlaybook(
+            AnsiblePlaybookCommandBuilder builder, PlaybookResult result, Launcher launcher, TaskListener listener)
+            throws Exception {
+        if (result == null) {
+            return execEnv.execute(builder.buildCmd(), "root", launcher, listener);
+        }
+        String fullCmd = builder.eventCallback(EVENT_CALLBACK_DIR).buildCmd();
+        TaskListener eventListener = PlaybookEventParser.attach(listener, result);
+        try {
+            return execEnv.execute(fullCmd, "root", launcher, eventListener);
+        } finally {
+            eventListener.getLogger().close();
+        }
+    }
+
+    /**
+     * Write the files of one playbook run, its extra vars as JSON and the host list of a limited run, with a
+     * single exec and point the command at them. Extra vars in a file keep their types and no longer count
+     * against the command line length.
+     */
+    private FileBundle stageRunFiles(
+            AnsiblePlaybookCommandBuilder builder, List<String> hosts, Launcher launcher, TaskListener listener)
+            throws Exception {
+        String prefix = RUN_FILES_DIR + "/" + UUID.randomUUID();
+        FileBundle runFiles = new FileBundle();
+        if (builder.hasExtraVars()) {
+            runFiles.add(prefix + ".json", builder.buildExtraVarsJson());
+            builder.extraVarsFile(prefix + ".json");
+        }
+        if (hosts != null) {
+            runFiles.add(prefix + ".hosts", String.join("\n", hosts) + "\n");
+            builder.limit("@" + prefix + ".hosts");
+        }
+        if (execEnv.writeFiles(runFiles, launcher, listener) != 0) {
+            throw new Exception("Failed to write the run files " + prefix + ".*");
+        }
+        return runFiles;
+    }
+
+    private void removeRunFiles(FileBundle runFiles, Launcher launcher, TaskListener listener) throws Exception {
+        if (!runFiles.isEmpty()) {
+            execEnv.execute("rm -f " + String.join(" ", runFiles.getPaths()), "root", launcher, listener);
+        }
+    }
+
+    /** Write the pulsar_events callback plugin into the exec container, once per context */
+    private void installEventCallback(Launcher launcher, TaskListener listener) throws Exception {
+        if (eventCallbackInstalled) {
+            return;
+        }
+        byte[] plugin;
+        try (InputStream in = AnsibleContext.class.getResourceAsStream(EVENT_CALLBACK_RESOURCE)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing resource " + EVENT_CALLBACK_RESOURCE);
+            }
+            plugin = in.readAllBytes();
+        }
+        int result = execEnv.execute(
+                "mkdir -p " + EVENT_CALLBACK_DIR + " && cat > " + EVENT_CALLBACK_DIR + "/pulsar_events.py",
+                null,
+                null,
+                new ByteArrayInputStream(plugin),
+                launcher,
+                listener);
+        if (result != 0) {
+            throw new Exception("Failed to install the playbook event callback");
+        }
+        eventCallbackInstalled = true;
+    }
+
+    private AnsiblePlaybookCommandBuilder newPlaybookCommand(
+            String playbook, String envName, Map<String, Object> extraVars, String options, String user)
+            throws Exception {
         AnsiblePlaybookCommandBuilder builder = new AnsiblePlaybookCommandBuilder()
                 .playbook(playbook)
                 .user(user != null ? user : "ansible")
@@ -290,13 +932,61 @@ public class AnsibleContext implements Serializable {
                 .extraVars(extraVars)
                 .options(options);
 
-        // Log command summary
-        listener.getLogger().println("=== Executing Ansible Playbook ===");
-        listener.getLogger().println(builder.getSummary());
+        AnsibleProjectsGlobalConfiguration config = AnsibleProjectsGlobalConfiguration.get();
+        if (config.getSshControlPersistSeconds() > 0) {
+            String controlDir = SshControlPaths.controlDir(config.getCacheRoot(), envName);
+            sshControlDirs.add(controlDir);
+            builder.sshControl(
+                    controlDir,
+                    SshControlPaths.sshArgs(project.getAnsibleConfig(), config.getSshControlPersistSeconds()));
+        }
+        if (factCacheManaged) {
+            builder.factCache(FactCache.cacheDir(config.getCacheRoot(), projectId, envName));
+        }
+        if (dependencyDir != null) {
+            builder.dependencies(dependencyDir);
+        }
+        return builder;
+    }
 
-        // Build and execute command
-        String fullCmd = builder.buildCmd();
-        return execEnv.execute(fullCmd, "root", launcher, listener);
+    /** Run a command in the exec container and return its output, failing on a non-zero exit code */
+    private String executeAndCapture(String command, Launcher launcher, TaskListener listener) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        int exitCode = execEnv.execute(command, "root", null, null, output, launcher, listener);
+        if (exitCode != 0) {
+            throw new Exception("Command failed with exit code " + exitCode + ": " + command);
+        }
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    private static int parseCores(String output) {
+        try {
+            return Integer.parseInt(output.trim());
+        } catch (NumberFormatException e) {
+            return 1;
+        }
+    }
+
+    /**
+     * Remove cached facts of the project, for one environment or all when envName is null, and for the
+     * given hosts only when hosts is not empty. Returns false when the fact cache is not in use.
+     */
+    public boolean invalidateFactCache(String envName, List<String> hosts, Launcher launcher, TaskListener listener)
+            throws Exception {
+        if (envName == null && hosts != null && !hosts.isEmpty()) {
+            throw new IllegalArgumentException("Hosts can only be invalidated for an environment");
+        }
+        ensureInitialized();
+
+        if (!factCacheManaged) {
+            return false;
+        }
+        String dir = FactCache.cacheDir(AnsibleProjectsGlobalConfiguration.get().getCacheRoot(), projectId, envName);
+        int result = execEnv.execute(FactCache.buildInvalidateCmd(dir, hosts), "root", launcher, listener);
+        if (result != 0) {
+            throw new Exception("Failed to invalidate fact cache " + dir);
+        }
+        return true;
     }
 
     /** Execute a command in the project environment */
@@ -308,6 +998,11 @@ public class AnsibleContext implements Serializable {
         }
 
         String fullCmd = "cd " + projectDir + " && " + command;
+        if (dependencyDir != null) {
+            fullCmd = DependencyCache.buildUseCmd(
+                    dependencyDir,
+                    "export " + String.join(" ", DependencyCache.envAssignments(dependencyDir)) + " && " + fullCmd);
+        }
         if (sshAgent != null && sshAgent.getSocketPath() != null) {
             fullCmd = "export SSH_AUTH_SOCK=" + sshAgent.getSocketPath() + " && " + fullCmd;
         }
@@ -319,6 +1014,7 @@ public class AnsibleContext implements Serializable {
     public void release(boolean cleanup, Launcher launcher, TaskListener listener) {
         synchronized (AnsibleContext.class) {
             referenceCount--;
+            lastUsed = System.currentTimeMillis();
 
             if (referenceCount <= 0 && cleanup) {
                 listener.getLogger().println("Cleaning up Ansible project: " + projectId);
@@ -340,7 +1036,12 @@ public class AnsibleContext implements Serializable {
                 sshAgent.stop(launcher, listener);
             }
 
-            // 3. Release container (this will call ContainerManager.release)
+            // 3. Close SSH master connections no other context uses
+            if (execEnv != null) {
+                closeSshControlDirs(launcher, listener);
+            }
+
+            // 4. Release container (this will call ContainerManager.release)
             if (execEnv != null) {
                 execEnv.release(true, launcher, listener); // cleanup=true
             } else {
@@ -357,6 +1058,108 @@ public class AnsibleContext implements Serializable {
         }
     }
 
+    /** Close the master connections of environments no other context on the node has used, under the registry lock */
+    private void closeSshControlDirs(Launcher launcher, TaskListener listener) throws Exception {
+        closeSshControlDirs(getUnsharedSshControlDirs(), launcher, listener);
+    }
+
+    /** Control directories of this context no other live context on the node uses, under the registry lock */
+    private List<String> getUnsharedSshControlDirs() {
+        List<String> unshared = new ArrayList<>();
+        for (String controlDir : sshControlDirs) {
+            boolean shared = activeContexts.values().stream()
+                    .anyMatch(other -> other != this
+                            && !other.isKilled
+                            && nodeName.equals(other.nodeName)
+                            && other.sshControlDirs.contains(controlDir));
+            if (!shared) {
+                unshared.add(controlDir);
+            }
+        }
+        return unshared;
+    }
+
+    private void closeSshControlDirs(List<String> controlDirs, Launcher launcher, TaskListener listener)
+            throws Exception {
+        for (String controlDir : controlDirs) {
+            execEnv.execute(SshControlPaths.buildCloseCmd(controlDir), launcher, listener);
+        }
+    }
+
+    /**
+     * Discard a pre-warmed context no build has used: drop it from the registry and remove its checkout,
+     * leaving the shared container and SSH agent running for other contexts.
+     */
+    public boolean discardIfUnused(Launcher launcher, TaskListener listener) {
+        return evict(true, launcher, listener);
+    }
+
+    /** Evict the context if no build holds it, deleting its checkout; the shared container keeps running */
+    public boolean evictIfIdle(Launcher launcher, TaskListener listener) {
+        return evict(false, launcher, listener);
+    }
+
+    private boolean evict(boolean prewarmedOnly, Launcher launcher, TaskListener listener) {
+        List<String> controlDirs;
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        synchronized (AnsibleContext.class) {
+            if ((prewarmedOnly && prewarmedAt == 0)
+                    || referenceCount > 0
+                    || activeContexts.get(contextKey) != this) {
+                return false;
+            }
+            activeContexts.remove(contextKey);
+            isKilled = true;
+            controlDirs = getUnsharedSshControlDirs();
+            // Contexts for the same key use the same directory, they are held back until it is deleted
+            evicting.put(contextKey, done);
+        }
+
+        // The context is out of the registry, so its remote cleanup need not block builds on other contexts
+        try {
+            if (execEnv != null && execEnv.isRunning(launcher, listener)) {
+                closeSshControlDirs(controlDirs, launcher, listener);
+                execEnv.execute("rm -rf " + projectDir, launcher, listener);
+                execEnv.release(false, launcher, listener);
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Failed to remove checkout " + projectDir, e);
+        } finally {
+            evicting.remove(contextKey, done);
+            done.complete(null);
+        }
+        return true;
+    }
+
+    /** Pre-warmed contexts no build has picked up for longer than the given age */
+    public static List<AnsibleContext> getUnusedPrewarmed(long maxAgeMillis) {
+        long now = System.currentTimeMillis();
+        List<AnsibleContext> unused = new ArrayList<>();
+        for (AnsibleContext context : activeContexts.values()) {
+            long prewarmed = context.prewarmedAt;
+            if (prewarmed > 0 && now - prewarmed >= maxAgeMillis) {
+                unused.add(context);
+            }
+        }
+        return unused;
+    }
+
+    /** Snapshot of the registered contexts, read without the registry lock */
+    public static List<AnsibleContext> getActiveContexts() {
+        return new ArrayList<>(activeContexts.values());
+    }
+
+    /** Pre-warmed contexts on the node not used by any build yet, read without the registry lock */
+    public static int countUnusedPrewarmed(String nodeName) {
+        int count = 0;
+        for (AnsibleContext context : activeContexts.values()) {
+            if (context.prewarmedAt > 0 && nodeName.equals(context.nodeName)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     /** Check if context is still valid */
     private boolean isValid(Launcher launcher, TaskListener listener) {
         return !isKilled && execEnv != null && execEnv.isRunning(launcher, listener);
@@ -376,7 +1179,7 @@ public class AnsibleContext implements Serializable {
 
     /** Create SharedContainerStep for existing container system */
     private SharedContainerStep createContainerStep(List<String> containerOptions) {
-        SharedContainerStep step = new SharedContainerStep(project.getExecEnv());
+        SharedContainerStep step = new SharedContainerStep(project.getExecEnvImage());
 
         if (containerOptions != null && !containerOptions.isEmpty()) {
             step.setOptions(String.join(" ", containerOptions));
@@ -411,6 +1214,10 @@ public class AnsibleContext implements Serializable {
         return ref;
     }
 
+    public String getCommit() {
+        return commit;
+    }
+
     public AnsibleProject getProject() {
         return project;
     }
@@ -439,6 +1246,14 @@ public class AnsibleContext implements Serializable {
         return isKilled;
     }
 
+    public boolean isPrewarmed() {
+        return prewarmedAt > 0;
+    }
+
+    public long getLastUsed() {
+        return lastUsed;
+    }
+
     public Set<String> getSetupVaultNames() {
         return vaultManager != null ? vaultManager.getSetupVaultNames() : Collections.emptySet();
     }
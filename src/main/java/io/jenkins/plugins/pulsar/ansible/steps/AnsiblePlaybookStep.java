@@ -4,7 +4,14 @@ import hudson.Extension;
 import hudson.Launcher;
 import hudson.model.Run;
 import hudson.model.TaskListener;
+import io.jenkins.plugins.pulsar.ansible.AnsibleProjectsGlobalConfiguration;
+import io.jenkins.plugins.pulsar.ansible.action.AnsiblePlaybookResultAction;
+import io.jenkins.plugins.pulsar.ansible.model.PlaybookResult;
+import io.jenkins.plugins.pulsar.ansible.service.TimingProfiler;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import org.jenkinsci.plugins.workflow.steps.*;
@@ -20,6 +27,15 @@ public class AnsiblePlaybookStep extends Step implements Serializable {
     private String user = "root";
     private Map<String, Object> extraVars;
     private String options;
+    private List<String> envNames;
+    private int parallelism = 0;
+    private boolean failFast = true;
+    private int shards = 1;
+    private int retries = 0;
+    private boolean retryFailedHostsOnly = true;
+    private int retryBackoffSeconds = 30;
+    private boolean force = false;
+    private String onUnchanged = RetryingPlaybookRunner.UNCHANGED_SKIP;
 
     @DataBoundConstructor
     public AnsiblePlaybookStep(String playbook, String envName) {
@@ -62,6 +78,100 @@ public class AnsiblePlaybookStep extends Step implements Serializable {
         this.options = options;
     }
 
+    public List<String> getEnvNames() {
+        return envNames;
+    }
+
+    /** Run the playbook against several environments concurrently instead of envName */
+    @DataBoundSetter
+    public void setEnvNames(List<String> envNames) {
+        this.envNames = envNames;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /** Maximum number of environments running at once, 0 for all */
+    @DataBoundSetter
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(0, parallelism);
+    }
+
+    public boolean isFailFast() {
+        return failFast;
+    }
+
+    /** Cancel the remaining environments on the first failure, otherwise run all and report every failure */
+    @DataBoundSetter
+    public void setFailFast(boolean failFast) {
+        this.failFast = failFast;
+    }
+
+    public int getShards() {
+        return shards;
+    }
+
+    /** Split the inventory hosts into this many concurrent ansible-playbook processes, 0 to size by cores */
+    @DataBoundSetter
+    public void setShards(int shards) {
+        this.shards = Math.max(0, shards);
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    /** Number of times a failed playbook is run again */
+    @DataBoundSetter
+    public void setRetries(int retries) {
+        this.retries = Math.max(0, retries);
+    }
+
+    public boolean isRetryFailedHostsOnly() {
+        return retryFailedHostsOnly;
+    }
+
+    /** Limit retries to the failed and unreachable hosts, otherwise rerun against the whole inventory */
+    @DataBoundSetter
+    public void setRetryFailedHostsOnly(boolean retryFailedHostsOnly) {
+        this.retryFailedHostsOnly = retryFailedHostsOnly;
+    }
+
+    public int getRetryBackoffSeconds() {
+        return retryBackoffSeconds;
+    }
+
+    /** Wait before the first retry, doubled for each further one */
+    @DataBoundSetter
+    public void setRetryBackoffSeconds(int retryBackoffSeconds) {
+        this.retryBackoffSeconds = Math.max(0, retryBackoffSeconds);
+    }
+
+    public boolean isForce() {
+        return force;
+    }
+
+    /** Run even when a recent successful run had the same commit, playbook, inventory, vars and vaults */
+    @DataBoundSetter
+    public void setForce(boolean force) {
+        this.force = force;
+    }
+
+    public String getOnUnchanged() {
+        return onUnchanged;
+    }
+
+    /** What to do with a run matching a recent successful one: "skip" it, or "check" for drift only */
+    @DataBoundSetter
+    public void setOnUnchanged(String onUnchanged) {
+        if (!RetryingPlaybookRunner.UNCHANGED_SKIP.equals(onUnchanged)
+                && !RetryingPlaybookRunner.UNCHANGED_CHECK.equals(onUnchanged)) {
+            throw new IllegalArgumentException("onUnchanged must be 'skip' or 'check': " + onUnchanged);
+        }
+        this.onUnchanged = onUnchanged;
+    }
+
     @Override
     public StepExecution start(StepContext context) throws Exception {
         return new AnsiblePlaybookStepExecution(this, context);
@@ -90,7 +200,7 @@ public class AnsiblePlaybookStep extends Step implements Serializable {
         }
     }
 
-    public static class AnsiblePlaybookStepExecution extends SynchronousNonBlockingStepExecution<Integer> {
+    public static class AnsiblePlaybookStepExecution extends SynchronousNonBlockingStepExecution<Object> {
         private final AnsiblePlaybookStep step;
 
         AnsiblePlaybookStepExecution(AnsiblePlaybookStep step, StepContext context) {
@@ -99,7 +209,7 @@ public class AnsiblePlaybookStep extends Step implements Serializable {
         }
 
         @Override
-        protected Integer run() throws Exception {
+        protected Object run() throws Exception {
             TaskListener listener = getContext().get(TaskListener.class);
             Launcher launcher = getContext().get(Launcher.class);
             AnsibleContext ansibleContext = getContext().get(AnsibleContext.class);
@@ -109,6 +219,28 @@ public class AnsiblePlaybookStep extends Step implements Serializable {
                 throw new RuntimeException("ansiblePlaybook must be used inside an ansibleProject block");
             }
 
+            RetryingPlaybookRunner playbookRunner = new RetryingPlaybookRunner(
+                    ansibleContext,
+                    step.playbook,
+                    step.extraVars,
+                    step.options,
+                    step.user,
+                    step.shards,
+                    step.retries,
+                    step.retryFailedHostsOnly,
+                    step.retryBackoffSeconds,
+                    step.force,
+                    RetryingPlaybookRunner.UNCHANGED_CHECK.equals(step.onUnchanged));
+
+            if (step.envNames != null && !step.envNames.isEmpty()) {
+                List<String> envNames = new ArrayList<>(new LinkedHashSet<>(step.envNames));
+                return new MultiEnvPlaybookRunner(ansibleContext, playbookRunner, step.parallelism, step.failFast)
+                        .run(envNames, run, launcher, listener);
+            }
+            if (step.envName == null || step.envName.trim().isEmpty()) {
+                throw new IllegalArgumentException("envName or envNames is required");
+            }
+
             // 2. Setup SSH agent and keys
             ansibleContext.setupEnvSshKeys(run, launcher, listener, step.getEnvName());
 
@@ -120,8 +252,14 @@ public class AnsiblePlaybookStep extends Step implements Serializable {
             listener.getLogger().println("Environment: " + step.envName);
             listener.getLogger().println("User: " + step.user);
 
-            int exitCode = ansibleContext.runPlaybook(
-                    step.playbook, step.envName, step.extraVars, step.options, step.user, launcher, listener);
+            PlaybookResult result = new PlaybookResult(
+                    step.playbook,
+                    step.envName,
+                    AnsibleProjectsGlobalConfiguration.get().getPlaybookEventsPerHost());
+            int exitCode = playbookRunner.run(step.envName, result, run, launcher, listener);
+            result.finish(exitCode);
+            AnsiblePlaybookResultAction.record(run, result);
+            TimingProfiler.record(run, result, listener);
 
             listener.getLogger().println("Run playbook finished with code: " + exitCode);
 
@@ -129,7 +267,7 @@ public class AnsiblePlaybookStep extends Step implements Serializable {
                 throw new RuntimeException("Ansible playbook failed with exit code: " + exitCode);
             }
 
-            return exitCode;
+            return result.toMap();
         }
     }
 }
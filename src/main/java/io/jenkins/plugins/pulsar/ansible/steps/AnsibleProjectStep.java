@@ -20,6 +20,7 @@ public class AnsibleProjectStep extends Step implements Serializable {
     private List<String> containerOptions;
     private boolean cleanup = true;
     private int timeoutHours = 8;
+    private boolean execServer = false;
 
     @DataBoundConstructor
     public AnsibleProjectStep(String projectId, String ref) {
@@ -47,6 +48,10 @@ public class AnsibleProjectStep extends Step implements Serializable {
         return timeoutHours;
     }
 
+    public boolean isExecServer() {
+        return execServer;
+    }
+
     @DataBoundSetter
     public void setContainerOptions(List<String> containerOptions) {
         this.containerOptions = containerOptions;
@@ -62,6 +67,11 @@ public class AnsibleProjectStep extends Step implements Serializable {
         this.timeoutHours = Math.max(1, Math.min(24, timeoutHours));
     }
 
+    @DataBoundSetter
+    public void setExecServer(boolean execServer) {
+        this.execServer = execServer;
+    }
+
     @Override
     public StepExecution start(StepContext context) throws Exception {
         return new AnsibleProjectStepExecution(this, context);
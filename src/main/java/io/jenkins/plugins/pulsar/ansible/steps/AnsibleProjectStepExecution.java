@@ -1,7 +1,9 @@
 package io.jenkins.plugins.pulsar.ansible.steps;
 
 import hudson.Launcher;
+import hudson.model.Run;
 import hudson.model.TaskListener;
+import io.jenkins.plugins.pulsar.ansible.action.AnsibleRevisionAction;
 import java.util.List;
 import org.jenkinsci.plugins.workflow.steps.*;
 
@@ -12,6 +14,7 @@ public class AnsibleProjectStepExecution extends SynchronousNonBlockingStepExecu
     private final String ref;
     private final List<String> containerOptions;
     private final boolean cleanup;
+    private final boolean execServer;
 
     AnsibleProjectStepExecution(AnsibleProjectStep step, StepContext context) {
         super(context);
@@ -19,6 +22,7 @@ public class AnsibleProjectStepExecution extends SynchronousNonBlockingStepExecu
         this.ref = step.getRef();
         this.containerOptions = step.getContainerOptions();
         this.cleanup = step.isCleanup();
+        this.execServer = step.isExecServer();
     }
 
     @Override
@@ -31,10 +35,20 @@ public class AnsibleProjectStepExecution extends SynchronousNonBlockingStepExecu
 
         try {
             // Create Ansible context
-            ansibleContext = AnsibleContext.getOrCreate(projectId, ref, context, containerOptions);
+            ansibleContext = AnsibleContext.getOrCreate(projectId, ref, context, containerOptions, execServer);
+
+            AnsibleRevisionAction.record(
+                    context.get(Run.class),
+                    projectId,
+                    ansibleContext.getProject().getRepository(),
+                    ref,
+                    ansibleContext.getCommit());
 
             listener.getLogger().println("=== Ansible Project: " + projectId + " ===");
             listener.getLogger().println("Version: " + ref);
+            if (ansibleContext.getCommit() != null) {
+                listener.getLogger().println("Commit: " + ansibleContext.getCommit());
+            }
             listener.getLogger().println("Project Root: " + ansibleContext.getProjectDir());
 
             // Execute the body synchronously
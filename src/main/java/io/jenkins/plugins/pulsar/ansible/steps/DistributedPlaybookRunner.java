@@ -0,0 +1,332 @@
+package io.jenkins.plugins.pulsar.ansible.steps;
+
+import hudson.AbortException;
+import hudson.Launcher;
+import hudson.model.Computer;
+import hudson.model.Label;
+import hudson.model.Node;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.util.StreamTaskListener;
+import io.jenkins.plugins.pulsar.ansible.AnsibleProjectsGlobalConfiguration;
+import io.jenkins.plugins.pulsar.ansible.model.AnsibleProject;
+import io.jenkins.plugins.pulsar.ansible.service.AnsiblePlaybookCommandBuilder;
+import io.jenkins.plugins.pulsar.ansible.service.DeployMemo;
+import io.jenkins.plugins.pulsar.ansible.service.GitRefResolver;
+import io.jenkins.plugins.pulsar.ansible.service.InventorySharder;
+import io.jenkins.plugins.pulsar.ansible.service.PlayRecap;
+import io.jenkins.plugins.pulsar.ansible.service.WarmNodeLoadBalancer;
+import io.jenkins.plugins.pulsar.deployment.model.DeploymentTarget;
+import io.jenkins.plugins.pulsar.environment.EnvironmentACLGlobalConfiguration;
+import io.jenkins.plugins.pulsar.shared.LaunchHelper;
+import io.jenkins.plugins.pulsar.shared.PrefixedTaskListener;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import jenkins.model.Jenkins;
+import org.apache.commons.io.output.TeeOutputStream;
+
+/**
+ * Runs one playbook for an environment across several agents. The environment's hosts are split into
+ * partitions, and each partition runs in the exec container of a different agent matching the
+ * environment group's node labels, with its own Ansible context there. A partition that fails for
+ * reasons other than failed hosts is retried on an agent it has not tried yet. The recaps of all
+ * partitions are merged into one.
+ */
+class DistributedPlaybookRunner {
+    // ansible-playbook exit code when some hosts failed; retrying elsewhere would fail them again
+    private static final int HOSTS_FAILED = 2;
+
+    private final String projectId;
+    private final String ref;
+    private final String playbook;
+    private final String envName;
+    private final Map<String, Object> extraVars;
+    private final String options;
+    private final String user;
+    private final int partitions;
+    private final int maxAttempts;
+
+    DistributedPlaybookRunner(
+            String projectId,
+            String ref,
+            String playbook,
+            String envName,
+            Map<String, Object> extraVars,
+            String options,
+            String user,
+            int partitions,
+            int maxAttempts) {
+        this.projectId = projectId;
+        this.ref = ref;
+        this.playbook = playbook;
+        this.envName = envName;
+        this.extraVars = extraVars;
+        this.options = options;
+        this.user = user;
+        this.partitions = partitions;
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    /** Run all partitions, returns [exitCode, partitions, recap] */
+    Map<String, Object> run(Run<?, ?> run, TaskListener listener) throws Exception {
+        // Each partition passes its hosts as --limit, which would replace the one given in the options
+        if (new AnsiblePlaybookCommandBuilder().options(options).hasLimitOption()) {
+            throw new AbortException("distributedPlaybook partitions the hosts itself, options must not contain "
+                    + "--limit or -l; use ansiblePlaybook to run on a subset of " + envName);
+        }
+
+        List<Computer> agents = getAgents();
+        if (agents.isEmpty()) {
+            throw new AbortException("No online agent matches the node labels of environment " + envName);
+        }
+
+        // 1. Pin the ref once, so every partition and retry deploys the same commit
+        String commit = resolveCommit(listener);
+
+        // 2. List the hosts once, from the first agent
+        List<String> hosts = withContext(agents.get(0), commit, listener, (context, launcher) -> {
+            context.setupVaultFiles(run, launcher, listener, envName);
+            return context.listHosts(envName, launcher, listener);
+        });
+        if (hosts.isEmpty()) {
+            throw new AbortException("Inventory of environment " + envName + " has no hosts");
+        }
+
+        // Distributed runs are not memoized, but they may leave the environment in another state
+        DeployMemo.invalidate(projectId, envName);
+
+        int count = partitions > 0 ? partitions : agents.size();
+        List<List<String>> split = InventorySharder.partition(hosts, count);
+        listener.getLogger()
+                .println("=== Running " + playbook + " on " + hosts.size() + " hosts of " + envName + " in "
+                        + split.size() + " partitions across " + agents.size() + " agents ===");
+
+        // 3. One partition per agent, round-robin when there are more partitions than agents
+        List<Future<PartitionResult>> futures = new ArrayList<>();
+        for (int i = 0; i < split.size(); i++) {
+            int index = i;
+            futures.add(Computer.threadPoolForRemoting.submit(
+                    () -> runPartition(index, split.size(), split.get(index), agents, commit, run, listener)));
+        }
+
+        List<PartitionResult> results = new ArrayList<>();
+        try {
+            for (Future<PartitionResult> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw e;
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+
+        return report(results, listener);
+    }
+
+    /** The commit the ref points to now, the ref itself when it cannot be resolved */
+    private String resolveCommit(TaskListener listener) throws Exception {
+        AnsibleProject project = AnsibleProjectsGlobalConfiguration.get().getProjectById(projectId);
+        if (project == null) {
+            throw new AbortException("Ansible project not found: " + projectId);
+        }
+        String commit = GitRefResolver.resolveCommit(project.getRepository(), ref);
+        if (commit == null) {
+            listener.getLogger().println("Could not resolve " + ref + " to a commit, partitions use the ref as is");
+            return ref;
+        }
+        listener.getLogger().println("Deploying " + ref + " at commit " + commit);
+        return commit;
+    }
+
+    /** Online agents matching the environment's labels, warmest and least loaded first */
+    private List<Computer> getAgents() throws AbortException {
+        String labels = EnvironmentACLGlobalConfiguration.get().getNodeLabelsForEnvironment(envName);
+        Label label;
+        try {
+            label = Label.parseExpression(labels);
+        } catch (Exception e) {
+            throw new AbortException("Invalid node labels for environment " + envName + ": " + labels);
+        }
+
+        DeploymentTarget target = new DeploymentTarget(null, projectId, ref, envName, labels);
+        Map<Computer, Double> scores = new LinkedHashMap<>();
+        for (Computer computer : Jenkins.get().getComputers()) {
+            Node node = computer.getNode();
+            if (node == null || !computer.isOnline() || !computer.isAcceptingTasks() || !label.matches(node)) {
+                continue;
+            }
+            scores.put(
+                    computer,
+                    WarmNodeLoadBalancer.warmth(LaunchHelper.getNodeName(computer), target)
+                            - WarmNodeLoadBalancer.load(computer));
+        }
+
+        List<Computer> agents = new ArrayList<>(scores.keySet());
+        agents.sort(Comparator.comparingDouble(scores::get).reversed());
+        return agents;
+    }
+
+    private PartitionResult runPartition(
+            int index,
+            int total,
+            List<String> hosts,
+            List<Computer> agents,
+            String commit,
+            Run<?, ?> run,
+            TaskListener listener)
+            throws Exception {
+        Set<Computer> tried = new HashSet<>();
+        PartitionResult result = null;
+
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            Computer agent = pickAgent(index, agents, tried);
+            if (agent == null) {
+                break;
+            }
+            tried.add(agent);
+
+            String nodeName = LaunchHelper.getNodeName(agent);
+            PrefixedTaskListener partitionListener = new PrefixedTaskListener(
+                    listener, "[partition " + (index + 1) + "/" + total + " @" + nodeName + "] ");
+            PlayRecap recap = new PlayRecap();
+            try {
+                partitionListener
+                        .getLogger()
+                        .println("Running " + hosts.size() + " hosts, attempt " + attempt + "/" + maxAttempts);
+                int exitCode = runOnAgent(agent, commit, hosts, recap, run, partitionListener);
+                partitionListener.getLogger().println("Playbook finished with code: " + exitCode);
+                result = new PartitionResult(index, nodeName, hosts.size(), attempt, exitCode, recap);
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                partitionListener.getLogger().println("Playbook failed: " + e.getMessage());
+                result = new PartitionResult(index, nodeName, hosts.size(), attempt, -1, recap);
+            } finally {
+                partitionListener.close();
+            }
+
+            if (result.exitCode == 0 || result.exitCode == HOSTS_FAILED) {
+                break;
+            }
+        }
+
+        if (result == null) {
+            throw new AbortException("No agent available for partition " + (index + 1));
+        }
+        return result;
+    }
+
+    /** The partition's own agent first, then the next one it has not tried */
+    private static Computer pickAgent(int index, List<Computer> agents, Set<Computer> tried) {
+        for (int i = 0; i < agents.size(); i++) {
+            Computer agent = agents.get((index + i) % agents.size());
+            if (!tried.contains(agent) && agent.isOnline()) {
+                return agent;
+            }
+        }
+        return null;
+    }
+
+    private int runOnAgent(
+            Computer agent, String commit, List<String> hosts, PlayRecap recap, Run<?, ?> run, TaskListener listener)
+            throws Exception {
+        return withContext(agent, commit, listener, (context, launcher) -> {
+            context.setupEnvSshKeys(run, launcher, listener, envName);
+            context.setupVaultFiles(run, launcher, listener, envName);
+            TaskListener recapListener = new StreamTaskListener(
+                    new TeeOutputStream(listener.getLogger(), recap.newCollector()), StandardCharsets.UTF_8);
+            return context.runPlaybookOnHosts(
+                    playbook, envName, extraVars, options, user, hosts, launcher, recapListener);
+        });
+    }
+
+    /** Acquire the Ansible context of the project at the commit on an agent for the duration of the action */
+    private <T> T withContext(Computer agent, String commit, TaskListener listener, ContextAction<T> action)
+            throws Exception {
+        Launcher launcher = LaunchHelper.getLauncher(agent, listener);
+        if (launcher == null) {
+            throw new AbortException("Agent " + agent.getName() + " is offline");
+        }
+
+        AnsibleContext context = AnsibleContext.getOrCreate(
+                projectId, commit, LaunchHelper.getNodeName(agent), null, false, launcher, listener);
+        try {
+            return action.apply(context, launcher);
+        } finally {
+            context.release(false, launcher, listener);
+        }
+    }
+
+    private static Map<String, Object> report(List<PartitionResult> results, TaskListener listener)
+            throws AbortException {
+        PlayRecap recap = new PlayRecap();
+        int exitCode = 0;
+        List<Map<String, Object>> partitionMaps = new ArrayList<>();
+        List<String> failures = new ArrayList<>();
+
+        listener.getLogger().println("=== Partition results ===");
+        for (PartitionResult result : results) {
+            recap.merge(result.recap);
+            exitCode = Math.max(exitCode, result.exitCode == -1 ? 1 : result.exitCode);
+            listener.getLogger()
+                    .println("Partition " + (result.index + 1) + " on " + result.nodeName + ": exit code "
+                            + result.exitCode + " after " + result.attempts + " attempt(s), " + result.hosts
+                            + " hosts");
+            if (result.exitCode != 0) {
+                failures.add((result.index + 1) + " (" + result.nodeName + ", exit code " + result.exitCode + ")");
+            }
+
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("node", result.nodeName);
+            entry.put("hosts", result.hosts);
+            entry.put("attempts", result.attempts);
+            entry.put("exitCode", result.exitCode);
+            partitionMaps.add(entry);
+        }
+
+        listener.getLogger().println("=== Aggregated PLAY RECAP ===");
+        listener.getLogger().print(recap.format());
+
+        if (!failures.isEmpty()) {
+            throw new AbortException("Ansible playbook failed for partitions: " + String.join(", ", failures));
+        }
+
+        Map<String, Object> resultMap = new LinkedHashMap<>();
+        resultMap.put("exitCode", exitCode);
+        resultMap.put("partitions", partitionMaps);
+        resultMap.put("recap", recap.getHosts());
+        return resultMap;
+    }
+
+    private interface ContextAction<T> {
+        T apply(AnsibleContext context, Launcher launcher) throws Exception;
+    }
+
+    private static class PartitionResult {
+        private final int index;
+        private final String nodeName;
+        private final int hosts;
+        private final int attempts;
+        private final int exitCode;
+        private final PlayRecap recap;
+
+        PartitionResult(int index, String nodeName, int hosts, int attempts, int exitCode, PlayRecap recap) {
+            this.index = index;
+            this.nodeName = nodeName;
+            this.hosts = hosts;
+            this.attempts = attempts;
+            this.exitCode = exitCode;
+            this.recap = recap;
+        }
+    }
+}
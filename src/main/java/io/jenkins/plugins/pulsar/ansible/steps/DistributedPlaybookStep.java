@@ -0,0 +1,157 @@
+package io.jenkins.plugins.pulsar.ansible.steps;
+
+import hudson.Extension;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Set;
+import org.jenkinsci.plugins.workflow.steps.*;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+/** Runs a playbook for one environment with its hosts partitioned across the agents serving that environment */
+public class DistributedPlaybookStep extends Step implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String projectId;
+    private final String ref;
+    private final String playbook;
+    private final String envName;
+
+    private String user = "root";
+    private Map<String, Object> extraVars;
+    private String options;
+    private int partitions = 0;
+    private int maxAttempts = 2;
+
+    @DataBoundConstructor
+    public DistributedPlaybookStep(String projectId, String ref, String playbook, String envName) {
+        this.projectId = projectId;
+        this.ref = ref;
+        this.playbook = playbook;
+        this.envName = envName;
+    }
+
+    public String getProjectId() {
+        return projectId;
+    }
+
+    public String getRef() {
+        return ref;
+    }
+
+    public String getPlaybook() {
+        return playbook;
+    }
+
+    public String getEnvName() {
+        return envName;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    @DataBoundSetter
+    public void setUser(String user) {
+        this.user = user;
+    }
+
+    public Map<String, Object> getExtraVars() {
+        return extraVars;
+    }
+
+    @DataBoundSetter
+    public void setExtraVars(Map<String, Object> extraVars) {
+        this.extraVars = extraVars;
+    }
+
+    public String getOptions() {
+        return options;
+    }
+
+    @DataBoundSetter
+    public void setOptions(String options) {
+        this.options = options;
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    /** Number of host partitions, 0 for one per matching online agent */
+    @DataBoundSetter
+    public void setPartitions(int partitions) {
+        this.partitions = Math.max(0, partitions);
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /** Attempts per partition, each retry on an agent the partition has not run on yet */
+    @DataBoundSetter
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    @Override
+    public StepExecution start(StepContext context) throws Exception {
+        return new DistributedPlaybookStepExecution(this, context);
+    }
+
+    @Extension
+    public static class DescriptorImpl extends StepDescriptor {
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return Set.of(TaskListener.class, Run.class);
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "distributedPlaybook";
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Run Ansible Playbook across agents";
+        }
+
+        @Override
+        public boolean takesImplicitBlockArgument() {
+            return false;
+        }
+    }
+
+    public static class DistributedPlaybookStepExecution extends SynchronousNonBlockingStepExecution<Object> {
+        private final DistributedPlaybookStep step;
+
+        DistributedPlaybookStepExecution(DistributedPlaybookStep step, StepContext context) {
+            super(context);
+            this.step = step;
+        }
+
+        @Override
+        protected Object run() throws Exception {
+            TaskListener listener = getContext().get(TaskListener.class);
+            Run<?, ?> run = getContext().get(Run.class);
+
+            if (step.envName == null || step.envName.trim().isEmpty()) {
+                throw new IllegalArgumentException("envName is required");
+            }
+
+            return new DistributedPlaybookRunner(
+                            step.projectId,
+                            step.ref,
+                            step.playbook,
+                            step.envName,
+                            step.extraVars,
+                            step.options,
+                            step.user,
+                            step.partitions,
+                            step.maxAttempts)
+                    .run(run, listener);
+        }
+    }
+}
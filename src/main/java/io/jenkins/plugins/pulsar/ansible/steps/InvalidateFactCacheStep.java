@@ -0,0 +1,101 @@
+package io.jenkins.plugins.pulsar.ansible.steps;
+
+import hudson.Extension;
+import hudson.Launcher;
+import hudson.model.TaskListener;
+import java.io.Serializable;
+import java.util.List;
+import java.util.Set;
+import org.jenkinsci.plugins.workflow.steps.*;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+/** Drops cached host facts of the enclosing Ansible project, so the next playbook gathers them again */
+public class InvalidateFactCacheStep extends Step implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private String envName;
+    private List<String> hosts;
+
+    @DataBoundConstructor
+    public InvalidateFactCacheStep() {}
+
+    public String getEnvName() {
+        return envName;
+    }
+
+    /** Environment to invalidate, all environments of the project when not set */
+    @DataBoundSetter
+    public void setEnvName(String envName) {
+        this.envName = envName != null && !envName.trim().isEmpty() ? envName.trim() : null;
+    }
+
+    public List<String> getHosts() {
+        return hosts;
+    }
+
+    /** Hosts to invalidate within the environment, all hosts when not set */
+    @DataBoundSetter
+    public void setHosts(List<String> hosts) {
+        this.hosts = hosts;
+    }
+
+    @Override
+    public StepExecution start(StepContext context) throws Exception {
+        return new InvalidateFactCacheStepExecution(this, context);
+    }
+
+    @Extension
+    public static class DescriptorImpl extends StepDescriptor {
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return Set.of(TaskListener.class, Launcher.class, AnsibleContext.class);
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "invalidateFactCache";
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Invalidate Ansible Fact Cache";
+        }
+
+        @Override
+        public boolean takesImplicitBlockArgument() {
+            return false;
+        }
+    }
+
+    public static class InvalidateFactCacheStepExecution extends SynchronousNonBlockingStepExecution<Boolean> {
+        private final InvalidateFactCacheStep step;
+
+        InvalidateFactCacheStepExecution(InvalidateFactCacheStep step, StepContext context) {
+            super(context);
+            this.step = step;
+        }
+
+        @Override
+        protected Boolean run() throws Exception {
+            TaskListener listener = getContext().get(TaskListener.class);
+            Launcher launcher = getContext().get(Launcher.class);
+            AnsibleContext ansibleContext = getContext().get(AnsibleContext.class);
+
+            if (ansibleContext == null) {
+                throw new RuntimeException("invalidateFactCache must be used inside an ansibleProject block");
+            }
+
+            boolean invalidated = ansibleContext.invalidateFactCache(step.envName, step.hosts, launcher, listener);
+            if (!invalidated) {
+                listener.getLogger().println("Fact cache is not in use for " + ansibleContext.getProjectId());
+            } else {
+                listener.getLogger()
+                        .println("Invalidated cached facts of " + ansibleContext.getProjectId()
+                                + (step.envName != null ? " / " + step.envName : "")
+                                + (step.hosts != null && !step.hosts.isEmpty() ? " for " + step.hosts : ""));
+            }
+            return invalidated;
+        }
+    }
+}
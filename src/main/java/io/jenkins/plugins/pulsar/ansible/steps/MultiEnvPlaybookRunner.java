@@ -0,0 +1,190 @@
+package io.jenkins.plugins.pulsar.ansible.steps;
+
+import hudson.AbortException;
+import hudson.Launcher;
+import hudson.model.Computer;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import io.jenkins.plugins.pulsar.ansible.AnsibleProjectsGlobalConfiguration;
+import io.jenkins.plugins.pulsar.ansible.action.AnsiblePlaybookResultAction;
+import io.jenkins.plugins.pulsar.ansible.model.PlaybookResult;
+import io.jenkins.plugins.pulsar.ansible.service.TimingProfiler;
+import io.jenkins.plugins.pulsar.shared.PrefixedTaskListener;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs one playbook against several environments of a shared Ansible context. SSH keys and vault
+ * files for every environment are set up first, then the playbooks run concurrently with a log
+ * prefix per environment. With fail fast, the first failure cancels the environments still running.
+ */
+class MultiEnvPlaybookRunner {
+    static final String SUCCESS = "SUCCESS";
+    static final String FAILURE = "FAILURE";
+    static final String CANCELLED = "CANCELLED";
+
+    private final AnsibleContext context;
+    private final RetryingPlaybookRunner playbookRunner;
+    private final String playbook;
+    private final int parallelism;
+    private final boolean failFast;
+
+    MultiEnvPlaybookRunner(
+            AnsibleContext context, RetryingPlaybookRunner playbookRunner, int parallelism, boolean failFast) {
+        this.context = context;
+        this.playbookRunner = playbookRunner;
+        this.playbook = playbookRunner.getPlaybook();
+        this.parallelism = parallelism;
+        this.failFast = failFast;
+    }
+
+    /** Run the playbook for every environment, returns environment -> [status, exitCode, durationMillis] */
+    Map<String, Map<String, Object>> run(List<String> envNames, Run<?, ?> run, Launcher launcher, TaskListener listener)
+            throws Exception {
+        // 1. Keys and vaults mutate the shared agent and vault manager, so prepare them one at a time
+        for (String envName : envNames) {
+            context.setupEnvSshKeys(run, launcher, listener, envName);
+            context.setupVaultFiles(run, launcher, listener, envName);
+        }
+
+        int limit = parallelism > 0 ? Math.min(parallelism, envNames.size()) : envNames.size();
+        listener.getLogger()
+                .println("=== Running " + playbook + " on " + envNames.size() + " environments, " + limit
+                        + " at a time ===");
+
+        // 2. Run concurrently, bounded by the parallelism
+        Semaphore permits = new Semaphore(limit, true);
+        ExecutorCompletionService<EnvResult> completion =
+                new ExecutorCompletionService<>(Computer.threadPoolForRemoting);
+        Map<String, Future<EnvResult>> futures = new LinkedHashMap<>();
+        for (String envName : envNames) {
+            futures.put(envName, completion.submit(() -> runEnv(envName, permits, run, launcher, listener)));
+        }
+
+        Map<String, EnvResult> results = new LinkedHashMap<>();
+        try {
+            for (int i = 0; i < envNames.size(); i++) {
+                Future<EnvResult> done = completion.take();
+                EnvResult result = getResult(done, futures);
+                results.put(result.envName, result);
+                if (failFast && !result.isSuccess()) {
+                    listener.getLogger().println("Environment " + result.envName + " failed, cancelling the rest");
+                    futures.values().forEach(future -> future.cancel(true));
+                }
+            }
+        } catch (InterruptedException e) {
+            futures.values().forEach(future -> future.cancel(true));
+            throw e;
+        }
+
+        return report(envNames, results, listener);
+    }
+
+    private EnvResult runEnv(
+            String envName, Semaphore permits, Run<?, ?> run, Launcher launcher, TaskListener listener)
+            throws InterruptedException {
+        permits.acquire();
+        PrefixedTaskListener envListener = new PrefixedTaskListener(listener, "[" + envName + "] ");
+        PlaybookResult result = new PlaybookResult(
+                playbook, envName, AnsibleProjectsGlobalConfiguration.get().getPlaybookEventsPerHost());
+        long start = System.currentTimeMillis();
+        try {
+            envListener.getLogger().println("Starting playbook " + playbook);
+            int exitCode = playbookRunner.run(envName, result, run, launcher, envListener);
+            envListener.getLogger().println("Playbook finished with code: " + exitCode);
+            result.finish(exitCode);
+            return new EnvResult(envName, exitCode == 0 ? SUCCESS : FAILURE, exitCode, start, result);
+        } catch (InterruptedException e) {
+            envListener.getLogger().println("Playbook cancelled");
+            result.finish(-1);
+            return new EnvResult(envName, CANCELLED, -1, start, result);
+        } catch (Exception e) {
+            envListener.getLogger().println("Playbook failed: " + e.getMessage());
+            result.finish(-1);
+            return new EnvResult(envName, FAILURE, -1, start, result);
+        } finally {
+            try {
+                AnsiblePlaybookResultAction.record(run, result);
+            } catch (IOException e) {
+                envListener.getLogger().println("Failed to save playbook results: " + e.getMessage());
+            }
+            TimingProfiler.record(run, result, envListener);
+            envListener.close();
+            permits.release();
+        }
+    }
+
+    /** Result of a finished future, cancelled ones are mapped back to their environment */
+    private static EnvResult getResult(Future<EnvResult> done, Map<String, Future<EnvResult>> futures)
+            throws InterruptedException {
+        try {
+            return done.get();
+        } catch (CancellationException | ExecutionException e) {
+            for (Map.Entry<String, Future<EnvResult>> entry : futures.entrySet()) {
+                if (entry.getValue() == done) {
+                    return new EnvResult(entry.getKey(), CANCELLED, -1, System.currentTimeMillis(), null);
+                }
+            }
+            throw new IllegalStateException("Unknown playbook future", e);
+        }
+    }
+
+    private static Map<String, Map<String, Object>> report(
+            List<String> envNames, Map<String, EnvResult> results, TaskListener listener) throws AbortException {
+        Map<String, Map<String, Object>> resultMap = new LinkedHashMap<>();
+        List<String> failures = new ArrayList<>();
+
+        listener.getLogger().println("=== Playbook results ===");
+        for (String envName : envNames) {
+            EnvResult result = results.get(envName);
+            listener.getLogger()
+                    .println(envName + ": " + result.status + " (exit code " + result.exitCode + ", "
+                            + result.durationMillis + " ms)");
+            if (!result.isSuccess()) {
+                failures.add(envName + " (" + result.status.toLowerCase() + ", exit code " + result.exitCode + ")");
+            }
+
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("status", result.status);
+            entry.put("exitCode", result.exitCode);
+            entry.put("durationMillis", result.durationMillis);
+            if (result.playbookResult != null) {
+                entry.put("hosts", result.playbookResult.toMap().get("hosts"));
+            }
+            resultMap.put(envName, entry);
+        }
+
+        if (!failures.isEmpty()) {
+            throw new AbortException("Ansible playbook failed for: " + String.join(", ", failures));
+        }
+        return resultMap;
+    }
+
+    private static class EnvResult {
+        private final String envName;
+        private final String status;
+        private final int exitCode;
+        private final long durationMillis;
+        private final PlaybookResult playbookResult;
+
+        EnvResult(String envName, String status, int exitCode, long start, PlaybookResult playbookResult) {
+            this.envName = envName;
+            this.status = status;
+            this.exitCode = exitCode;
+            this.durationMillis = System.currentTimeMillis() - start;
+            this.playbookResult = playbookResult;
+        }
+
+        boolean isSuccess() {
+            return SUCCESS.equals(status);
+        }
+    }
+}
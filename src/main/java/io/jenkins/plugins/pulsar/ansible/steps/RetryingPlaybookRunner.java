@@ -0,0 +1,232 @@
+package io.jenkins.plugins.pulsar.ansible.steps;
+
+import hudson.Launcher;
+import hudson.Util;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import io.jenkins.plugins.pulsar.ansible.AnsibleProjectsGlobalConfiguration;
+import io.jenkins.plugins.pulsar.ansible.model.AnsibleVault;
+import io.jenkins.plugins.pulsar.ansible.model.PlaybookResult;
+import io.jenkins.plugins.pulsar.ansible.service.AnsiblePlaybookCommandBuilder;
+import io.jenkins.plugins.pulsar.ansible.service.DeployMemo;
+import io.jenkins.plugins.pulsar.ansible.service.VaultManager;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a playbook in an Ansible context and retries it when it fails. By default a retry is limited to
+ * the hosts that failed or were unreachable, so a mostly successful run is not repeated in full. The
+ * wait before each retry doubles, starting at the backoff. With a deploy memo window configured, a run
+ * whose inputs match a recent successful run of the environment is skipped or only checked.
+ */
+class RetryingPlaybookRunner {
+    static final String UNCHANGED_SKIP = "skip";
+    static final String UNCHANGED_CHECK = "check";
+
+    private final AnsibleContext context;
+    private final String playbook;
+    private final Map<String, Object> extraVars;
+    private final String options;
+    private final String user;
+    private final int shards;
+    private final int retries;
+    private final boolean failedHostsOnly;
+    private final int backoffSeconds;
+    private final boolean force;
+    private final boolean checkUnchanged;
+
+    RetryingPlaybookRunner(
+            AnsibleContext context,
+            String playbook,
+            Map<String, Object> extraVars,
+            String options,
+            String user,
+            int shards,
+            int retries,
+            boolean failedHostsOnly,
+            int backoffSeconds,
+            boolean force,
+            boolean checkUnchanged) {
+        this.context = context;
+        this.playbook = playbook;
+        this.extraVars = extraVars;
+        this.options = options;
+        this.user = user;
+        this.shards = shards;
+        this.retries = retries;
+        this.failedHostsOnly = failedHostsOnly;
+        this.backoffSeconds = backoffSeconds;
+        this.force = force;
+        this.checkUnchanged = checkUnchanged;
+    }
+
+    String getPlaybook() {
+        return playbook;
+    }
+
+    /** Run with retries, returns the exit code of the last attempt; every attempt is recorded in the result */
+    int run(String envName, PlaybookResult result, Run<?, ?> run, Launcher launcher, TaskListener listener)
+            throws Exception {
+        // Check mode changes nothing, so it neither uses nor affects the memo
+        int window = AnsibleProjectsGlobalConfiguration.get().getDeployMemoWindowMinutes();
+        boolean memoized = window > 0 && !isCheckMode(options);
+        String fingerprint = memoized ? fingerprint(envName, run) : null;
+        if (fingerprint != null && !force) {
+            DeployMemo.Entry previous = DeployMemo.lookup(context.getProjectId(), envName, fingerprint, window);
+            if (previous != null) {
+                return runUnchanged(envName, previous, result, launcher, listener);
+            }
+        }
+        if (memoized) {
+            DeployMemo.invalidate(context.getProjectId(), envName);
+        }
+
+        int exitCode = runWithRetries(envName, result, launcher, listener);
+        if (fingerprint != null && exitCode == 0) {
+            DeployMemo.record(context.getProjectId(), envName, fingerprint, run.getExternalizableId());
+        }
+        return exitCode;
+    }
+
+    /** Skip a run matching a recent successful one, or run it in check mode to report drift */
+    private int runUnchanged(
+            String envName, DeployMemo.Entry previous, PlaybookResult result, Launcher launcher, TaskListener listener)
+            throws Exception {
+        String reason = "same inputs as " + previous.getRunId() + ", successful "
+                + Util.getTimeSpanString(System.currentTimeMillis() - previous.getTimestamp()) + " ago";
+        if (!checkUnchanged) {
+            listener.getLogger().println("Skipping " + playbook + " on " + envName + ": " + reason
+                    + " (force: true to run anyway)");
+            result.markUnchanged(false, reason);
+            return 0;
+        }
+
+        listener.getLogger().println("Running " + playbook + " on " + envName + " in check mode only: " + reason);
+        result.markUnchanged(true, reason);
+        String checkOptions = options != null && !options.trim().isEmpty() ? options.trim() + " --check" : "--check";
+        long start = System.currentTimeMillis();
+        int exitCode = context.runPlaybook(
+                playbook, envName, extraVars, checkOptions, user, shards, result, launcher, listener);
+        result.addAttempt(null, exitCode, System.currentTimeMillis() - start);
+        if (result.getChangedCount() > 0) {
+            listener.getLogger()
+                    .println("Environment " + envName + " drifted: " + result.getChangedCount()
+                            + " changes would be made, run with force: true to apply them");
+        }
+        return exitCode;
+    }
+
+    /**
+     * Inputs deciding the state a run leaves the environment in. The commit pins the playbook, roles,
+     * requirements and static inventory; without a resolved commit a run has no fingerprint. Vaults count
+     * by a digest of their current password, so rotating one makes the next run apply again.
+     */
+    private String fingerprint(String envName, Run<?, ?> run) throws Exception {
+        if (context.getCommit() == null) {
+            return null;
+        }
+        Map<String, String> inputs = new LinkedHashMap<>();
+        inputs.put("project", context.getProjectId());
+        inputs.put("commit", context.getCommit());
+        inputs.put("image", context.getProject().getExecEnvImage());
+        inputs.put("playbook", playbook);
+        inputs.put("environment", envName);
+        inputs.put("inventory", context.getInventoryPath(envName));
+        inputs.put("user", String.valueOf(user));
+        inputs.put("options", options != null ? options.trim() : "");
+        inputs.put(
+                "extraVars",
+                new AnsiblePlaybookCommandBuilder()
+                        .extraVars(extraVars != null ? canonical(extraVars) : null)
+                        .buildExtraVarsJson());
+        List<String> vaults = new ArrayList<>();
+        for (AnsibleVault vault : context.getProject().getEnvVaults(envName)) {
+            vaults.add(vault.getId() + ":" + vault.getCredentialId() + ":" + VaultManager.getSecretDigest(vault, run));
+        }
+        Collections.sort(vaults);
+        inputs.put("vaults", String.join(",", vaults));
+        return DeployMemo.fingerprint(inputs);
+    }
+
+    /** The vars with the keys of maps at every level sorted, so equal vars serialize the same */
+    private static Map<String, Object> canonical(Map<?, ?> vars) {
+        Map<String, Object> sorted = new TreeMap<>();
+        for (Map.Entry<?, ?> var : vars.entrySet()) {
+            sorted.put(String.valueOf(var.getKey()), canonicalValue(var.getValue()));
+        }
+        return sorted;
+    }
+
+    private static Object canonicalValue(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            return canonical(map);
+        }
+        if (value instanceof Collection<?> items) {
+            List<Object> list = new ArrayList<>();
+            for (Object item : items) {
+                list.add(canonicalValue(item));
+            }
+            return list;
+        }
+        return value;
+    }
+
+    private static boolean isCheckMode(String options) {
+        return options != null && options.matches("(^|.*\\s)(--check|-C)(\\s|$).*");
+    }
+
+    private int runWithRetries(String envName, PlaybookResult result, Launcher launcher, TaskListener listener)
+            throws Exception {
+        long start = System.currentTimeMillis();
+        int exitCode =
+                context.runPlaybook(playbook, envName, extraVars, options, user, shards, result, launcher, listener);
+        result.addAttempt(null, exitCode, System.currentTimeMillis() - start);
+
+        for (int retry = 1; retry <= retries && exitCode != 0; retry++) {
+            List<String> failedHosts = result.getFailedHosts();
+            if (failedHostsOnly && failedHosts.isEmpty()) {
+                // Syntax errors, missing files and the like fail before any host runs
+                listener.getLogger()
+                        .println("Playbook failed with code " + exitCode + " but no host failed, not retrying");
+                break;
+            }
+
+            long backoff = (long) backoffSeconds << Math.min(retry - 1, 16);
+            listener.getLogger()
+                    .println("=== Retry " + retry + "/" + retries + " of " + playbook + " in " + backoff + " s"
+                            + (failedHostsOnly ? " on " + failedHosts.size() + " failed hosts: "
+                                    + String.join(", ", failedHosts) : "") + " ===");
+            TimeUnit.SECONDS.sleep(backoff);
+
+            PlaybookResult retryResult = result.newRetry();
+            start = System.currentTimeMillis();
+            if (failedHostsOnly) {
+                exitCode = context.runPlaybookOnHosts(
+                        playbook, envName, extraVars, options, user, failedHosts, retryResult, launcher, listener);
+            } else {
+                exitCode = context.runPlaybook(
+                        playbook, envName, extraVars, options, user, shards, retryResult, launcher, listener);
+            }
+            result.mergeRetry(retryResult);
+            result.addAttempt(failedHostsOnly ? failedHosts : null, exitCode, System.currentTimeMillis() - start);
+        }
+
+        if (result.getAttempts().size() > 1) {
+            listener.getLogger().println("=== Playbook attempts ===");
+            for (PlaybookResult.Attempt attempt : result.getAttempts()) {
+                listener.getLogger()
+                        .println("Attempt " + attempt.getNumber() + ": "
+                                + (attempt.getHosts() != null ? attempt.getHosts().size() + " hosts" : "all hosts")
+                                + ", exit code " + attempt.getExitCode() + ", " + attempt.getFailedHosts()
+                                + " hosts failed, " + attempt.getDurationMillis() + " ms");
+            }
+        }
+        return exitCode;
+    }
+}
@@ -0,0 +1,124 @@
+package io.jenkins.plugins.pulsar.container;
+
+import hudson.Extension;
+import java.util.ArrayList;
+import java.util.List;
+import jenkins.model.GlobalConfiguration;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundSetter;
+
+@Extension
+@Symbol("sharedContainers")
+public class ContainerGlobalConfiguration extends GlobalConfiguration {
+
+    // Image prefetch
+    private boolean prefetchEnabled = false;
+    private List<String> prefetchImages = new ArrayList<>();
+    private int prefetchIntervalMinutes = 60;
+    private int prefetchConcurrency = 2;
+    private boolean prefetchRefreshTags = false;
+
+    // Exec admission control, off by default: a slot is held for the whole exec, playbooks included
+    private int maxConcurrentExecs = 0;
+    private int execTimeoutSeconds = 300;
+    private int execQueueTimeoutSeconds = 1800;
+
+    public ContainerGlobalConfiguration() {
+        load();
+    }
+
+    public static ContainerGlobalConfiguration get() {
+        return GlobalConfiguration.all().get(ContainerGlobalConfiguration.class);
+    }
+
+    public boolean isPrefetchEnabled() {
+        return prefetchEnabled;
+    }
+
+    @DataBoundSetter
+    public void setPrefetchEnabled(boolean prefetchEnabled) {
+        this.prefetchEnabled = prefetchEnabled;
+        save();
+    }
+
+    /** Extra images to keep warm besides the Ansible project exec environments */
+    public List<String> getPrefetchImages() {
+        return prefetchImages != null ? prefetchImages : new ArrayList<>();
+    }
+
+    @DataBoundSetter
+    public void setPrefetchImages(List<String> prefetchImages) {
+        this.prefetchImages = prefetchImages != null ? prefetchImages : new ArrayList<>();
+        save();
+    }
+
+    public int getPrefetchIntervalMinutes() {
+        return prefetchIntervalMinutes;
+    }
+
+    @DataBoundSetter
+    public void setPrefetchIntervalMinutes(int prefetchIntervalMinutes) {
+        this.prefetchIntervalMinutes = Math.max(5, prefetchIntervalMinutes);
+        save();
+    }
+
+    /** Maximum number of concurrent image pulls across all nodes */
+    public int getPrefetchConcurrency() {
+        return prefetchConcurrency;
+    }
+
+    @DataBoundSetter
+    public void setPrefetchConcurrency(int prefetchConcurrency) {
+        this.prefetchConcurrency = Math.max(1, prefetchConcurrency);
+        save();
+    }
+
+    /** Re-pull tag-based images that are already present to pick up new pushes */
+    public boolean isPrefetchRefreshTags() {
+        return prefetchRefreshTags;
+    }
+
+    @DataBoundSetter
+    public void setPrefetchRefreshTags(boolean prefetchRefreshTags) {
+        this.prefetchRefreshTags = prefetchRefreshTags;
+        save();
+    }
+
+    /** Concurrent execs allowed per shared container, 0 for unlimited */
+    public int getMaxConcurrentExecs() {
+        return maxConcurrentExecs;
+    }
+
+    @DataBoundSetter
+    public void setMaxConcurrentExecs(int maxConcurrentExecs) {
+        this.maxConcurrentExecs = Math.max(0, maxConcurrentExecs);
+        save();
+    }
+
+    /** Time a single exec may run before it is killed */
+    public int getExecTimeoutSeconds() {
+        return execTimeoutSeconds;
+    }
+
+    @DataBoundSetter
+    public void setExecTimeoutSeconds(int execTimeoutSeconds) {
+        this.execTimeoutSeconds = Math.max(10, execTimeoutSeconds);
+        save();
+    }
+
+    /** Time an exec may wait for a free slot before failing */
+    public int getExecQueueTimeoutSeconds() {
+        return execQueueTimeoutSeconds;
+    }
+
+    @DataBoundSetter
+    public void setExecQueueTimeoutSeconds(int execQueueTimeoutSeconds) {
+        this.execQueueTimeoutSeconds = Math.max(1, execQueueTimeoutSeconds);
+        save();
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Shared Containers Configuration";
+    }
+}
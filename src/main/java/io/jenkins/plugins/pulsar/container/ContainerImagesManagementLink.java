@@ -0,0 +1,77 @@
+package io.jenkins.plugins.pulsar.container;
+
+import hudson.Extension;
+import hudson.model.ManagementLink;
+import hudson.security.Permission;
+import io.jenkins.plugins.pulsar.container.service.ContainerManager;
+import io.jenkins.plugins.pulsar.container.service.ImagePrefetchService;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import jenkins.model.Jenkins;
+import org.kohsuke.stapler.StaplerRequest2;
+import org.kohsuke.stapler.StaplerResponse2;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+
+/** Status page showing which nodes hold warm exec environment images and how busy shared containers are */
+@Extension
+public class ContainerImagesManagementLink extends ManagementLink {
+
+    @Override
+    public String getIconFileName() {
+        return "symbol-cube-outline plugin-ionicons-api";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Exec Environment Images";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "exec-env-images";
+    }
+
+    @Override
+    public String getDescription() {
+        return "See which nodes have the configured exec environment images prefetched and shared container load";
+    }
+
+    @Override
+    public Category getCategory() {
+        return Category.STATUS;
+    }
+
+    @Override
+    public Permission getRequiredPermission() {
+        return Jenkins.ADMINISTER;
+    }
+
+    public ContainerGlobalConfiguration getConfiguration() {
+        return ContainerGlobalConfiguration.get();
+    }
+
+    public Map<String, List<ImagePrefetchService.ImageStatus>> getNodeStatus() {
+        return ImagePrefetchService.get().getNodeStatus();
+    }
+
+    public boolean isNodeWarm(String nodeName) {
+        return ImagePrefetchService.get().isNodeWarm(nodeName);
+    }
+
+    public boolean isRunning(String nodeName) {
+        return ImagePrefetchService.get().isRunning(nodeName);
+    }
+
+    public List<ContainerManager> getActiveContainers() {
+        return ContainerManager.getActiveContainers();
+    }
+
+    /** Trigger a prefetch on all online nodes */
+    @RequirePOST
+    public void doPrefetch(StaplerRequest2 req, StaplerResponse2 rsp) throws IOException {
+        Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+        ImagePrefetchService.get().prefetchAll();
+        rsp.sendRedirect(".");
+    }
+}
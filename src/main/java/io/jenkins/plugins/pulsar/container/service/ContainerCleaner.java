@@ -1,18 +1,32 @@
 package io.jenkins.plugins.pulsar.container.service;
 
 import hudson.Launcher;
+import hudson.model.Computer;
 import hudson.model.TaskListener;
 import io.jenkins.plugins.pulsar.shared.LaunchHelper;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import jenkins.model.Jenkins;
 
 public class ContainerCleaner {
     private static final Logger LOGGER = Logger.getLogger(ContainerCleaner.class.getName());
 
+    private static final int REMOVE_BATCH_SIZE = 50;
+    private static final int REMOVE_BATCH_TIMEOUT_SECONDS = 120;
+
     /** Look for orphaned containers that match the given node and image */
     public static String findManagedContainer(String nodeName, String image, Launcher launcher, TaskListener listener) {
         try {
@@ -48,8 +62,44 @@ public class ContainerCleaner {
         return null;
     }
 
-    /** Clean up ALL orphaned containers managed by this plugin */
-    public static void cleanupAllManagedContainers(Launcher launcher, TaskListener listener) {
+    /** Clean up ALL managed containers on every online node at once and report a per-node summary */
+    public static List<CleanupSummary> cleanupAllNodes(TaskListener listener) throws InterruptedException {
+        Map<String, Future<CleanupSummary>> futures = new LinkedHashMap<>();
+
+        for (Computer computer : Jenkins.get().getComputers()) {
+            String nodeName = LaunchHelper.getNodeName(computer);
+            Launcher launcher = LaunchHelper.getLauncher(computer, listener);
+            if (launcher == null) {
+                listener.getLogger().println("Skipping offline node: " + nodeName);
+                continue;
+            }
+
+            futures.put(
+                    nodeName,
+                    Computer.threadPoolForRemoting.submit(
+                            () -> cleanupAllManagedContainers(nodeName, launcher, listener)));
+        }
+
+        List<CleanupSummary> summaries = new ArrayList<>();
+        for (Map.Entry<String, Future<CleanupSummary>> entry : futures.entrySet()) {
+            try {
+                summaries.add(entry.getValue().get());
+            } catch (ExecutionException e) {
+                LOGGER.log(Level.WARNING, "Container cleanup failed on node " + entry.getKey(), e.getCause());
+                summaries.add(CleanupSummary.failed(entry.getKey(), String.valueOf(e.getCause())));
+            }
+        }
+
+        listener.getLogger().println("=== Container cleanup summary ===");
+        for (CleanupSummary summary : summaries) {
+            listener.getLogger().println(summary);
+        }
+
+        return summaries;
+    }
+
+    private static CleanupSummary cleanupAllManagedContainers(
+            String nodeName, Launcher launcher, TaskListener listener) {
         try {
             // Find all containers with our management label
             List<String> findCmd = Arrays.asList(
@@ -58,32 +108,126 @@ public class ContainerCleaner {
             ByteArrayOutputStream output = new ByteArrayOutputStream();
             int exitCode = LaunchHelper.executeQuietly(launcher, findCmd, output, 30, listener);
 
-            if (exitCode == 0) {
-                String result = output.toString(StandardCharsets.UTF_8).trim();
-                if (!result.isEmpty()) {
-                    String[] containerIds = result.split("\n");
-                    listener.getLogger().println("Found " + containerIds.length + " orphaned container(s) to clean up");
-
-                    for (String containerId : containerIds) {
-                        if (containerId.trim().isEmpty()) continue;
-
-                        try {
-                            List<String> removeCmd = Arrays.asList("docker", "rm", "-f", containerId.trim());
-                            LaunchHelper.executeQuietlyDiscardOutput(launcher, removeCmd, 10, listener);
-                            listener.getLogger().println("Removed orphaned container: " + getShortId(containerId));
-                        } catch (Exception e) {
-                            LOGGER.log(Level.WARNING, "Failed to remove orphaned container {0}: {1}", new Object[] {
-                                getShortId(containerId), e.getMessage()
-                            });
-                        }
-                    }
-                } else {
-                    listener.getLogger().println("No orphaned containers found");
-                }
+            if (exitCode != 0) {
+                return CleanupSummary.failed(nodeName, "docker ps exited with code " + exitCode);
+            }
+
+            List<String> containerIds = Arrays.stream(
+                            output.toString(StandardCharsets.UTF_8).split("\n"))
+                    .map(String::trim)
+                    .filter(id -> !id.isEmpty())
+                    .collect(Collectors.toList());
+
+            if (containerIds.isEmpty()) {
+                listener.getLogger().println("[" + nodeName + "] No orphaned containers found");
+                return new CleanupSummary(nodeName, 0, 0, null);
+            }
+
+            listener.getLogger()
+                    .println("[" + nodeName + "] Found " + containerIds.size() + " orphaned container(s) to clean up");
+
+            // One docker process per batch instead of one per container
+            int removed = 0;
+            for (int i = 0; i < containerIds.size(); i += REMOVE_BATCH_SIZE) {
+                List<String> batch = containerIds.subList(i, Math.min(i + REMOVE_BATCH_SIZE, containerIds.size()));
+                removed += removeBatch(nodeName, batch, launcher, listener);
             }
+
+            return new CleanupSummary(nodeName, containerIds.size(), removed, null);
+
         } catch (Exception e) {
             LOGGER.log(Level.WARNING, "Failed to discover orphaned containers", e);
-            listener.getLogger().println("Warning: Could not check for orphaned containers");
+            listener.getLogger().println("[" + nodeName + "] Warning: Could not check for orphaned containers");
+            return CleanupSummary.failed(nodeName, e.getMessage());
+        }
+    }
+
+    /** Remove a batch of containers with a single multi-argument docker rm, returns the number removed */
+    private static int removeBatch(String nodeName, List<String> containerIds, Launcher launcher, TaskListener listener)
+            throws IOException, InterruptedException {
+        List<String> removeCmd = new ArrayList<>(Arrays.asList("docker", "rm", "-f"));
+        removeCmd.addAll(containerIds);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        int exitCode = LaunchHelper.executeQuietly(launcher, removeCmd, output, REMOVE_BATCH_TIMEOUT_SECONDS, listener);
+
+        // docker rm prints the id of every container it removed, even when some of the batch failed
+        Set<String> removedIds = Arrays.stream(output.toString(StandardCharsets.UTF_8).split("\n"))
+                .map(String::trim)
+                .filter(containerIds::contains)
+                .collect(Collectors.toSet());
+
+        if (exitCode != 0) {
+            LOGGER.log(Level.WARNING, "Failed to remove {0} of {1} orphaned container(s) on {2}", new Object[] {
+                containerIds.size() - removedIds.size(), containerIds.size(), nodeName
+            });
+        }
+
+        listener.getLogger()
+                .println("[" + nodeName + "] Removed " + removedIds.size() + "/" + containerIds.size()
+                        + " orphaned container(s)");
+        return removedIds.size();
+    }
+
+    /** Result of cleaning up managed containers on a single node */
+    public static class CleanupSummary implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String nodeName;
+        private final int found;
+        private final int removed;
+        private final String error;
+
+        CleanupSummary(String nodeName, int found, int removed, String error) {
+            this.nodeName = nodeName;
+            this.found = found;
+            this.removed = removed;
+            this.error = error;
+        }
+
+        static CleanupSummary failed(String nodeName, String error) {
+            return new CleanupSummary(nodeName, 0, 0, error);
+        }
+
+        public String getNodeName() {
+            return nodeName;
+        }
+
+        public int getFound() {
+            return found;
+        }
+
+        public int getRemoved() {
+            return removed;
+        }
+
+        public int getFailed() {
+            return found - removed;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        /** Get the summary as a pipeline-friendly map */
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("node", nodeName);
+            map.put("found", found);
+            map.put("removed", removed);
+            map.put("failed", getFailed());
+            if (error != null) {
+                map.put("error", error);
+            }
+            return map;
+        }
+
+        @Override
+        public String toString() {
+            if (error != null) {
+                return String.format("%s: error - %s", nodeName, error);
+            }
+            return String.format("%s: found %d, removed %d, failed %d", nodeName, found, removed, getFailed());
         }
     }
 
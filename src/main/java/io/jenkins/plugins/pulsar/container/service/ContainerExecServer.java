@@ -0,0 +1,299 @@
+package io.jenkins.plugins.pulsar.container.service;
+
+import hudson.Launcher;
+import hudson.Proc;
+import hudson.model.Computer;
+import hudson.model.TaskListener;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Lightweight command server running inside a shared container. Keeps long-lived shell sessions
+ * (one "docker exec -i" each) open and frames commands over their stdin/stdout, so short commands
+ * skip the docker CLI fork and the exec setup. Each command gets its own stdin, environment and exit
+ * code; concurrent commands are multiplexed over a small pool of sessions per user.
+ */
+public class ContainerExecServer {
+    private static final Logger LOGGER = Logger.getLogger(ContainerExecServer.class.getName());
+
+    private static final int MAX_IDLE_SESSIONS_PER_USER = 4;
+    private static final String EXIT_MARKER = "__PULSAR_EXIT_";
+
+    private final String containerId;
+    private final Map<String, Deque<Session>> idleSessions = new ConcurrentHashMap<>();
+    private volatile boolean closed = false;
+
+    public ContainerExecServer(String containerId) {
+        this.containerId = containerId;
+    }
+
+    /**
+     * Execute a command through a pooled session. Returns null when no session could be started, in
+     * which case the caller should fall back to a plain docker exec.
+     */
+    public Integer execute(
+            String command,
+            String user,
+            Map<String, String> env,
+            InputStream stdin,
+            OutputStream output,
+            int timeoutSeconds,
+            Launcher launcher,
+            TaskListener listener)
+            throws IOException, InterruptedException {
+
+        if (closed) {
+            return null;
+        }
+
+        String userKey = user != null ? user.trim() : "";
+        Session session = borrow(userKey, launcher, listener);
+        if (session == null) {
+            return null;
+        }
+
+        boolean healthy = false;
+        try {
+            int exitCode = session.run(command, env, stdin, output, timeoutSeconds);
+            healthy = session.isAlive();
+            return exitCode;
+        } finally {
+            if (healthy) {
+                giveBack(userKey, session);
+            } else {
+                session.close();
+            }
+        }
+    }
+
+    /** Close all sessions, the server will not accept new commands */
+    public void close() {
+        closed = true;
+        for (Deque<Session> sessions : idleSessions.values()) {
+            Session session;
+            while ((session = sessions.poll()) != null) {
+                session.close();
+            }
+        }
+        idleSessions.clear();
+    }
+
+    public int getIdleSessionCount() {
+        return idleSessions.values().stream().mapToInt(Deque::size).sum();
+    }
+
+    private Session borrow(String userKey, Launcher launcher, TaskListener listener) {
+        Deque<Session> sessions = idleSessions.computeIfAbsent(userKey, k -> new ConcurrentLinkedDeque<>());
+        Session session;
+        while ((session = sessions.poll()) != null) {
+            if (session.isAlive()) {
+                return session;
+            }
+            session.close();
+        }
+
+        try {
+            return Session.start(containerId, userKey, launcher, listener);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to start exec server session in container " + containerId, e);
+            return null;
+        }
+    }
+
+    private void giveBack(String userKey, Session session) {
+        Deque<Session> sessions = idleSessions.computeIfAbsent(userKey, k -> new ConcurrentLinkedDeque<>());
+        if (closed || sessions.size() >= MAX_IDLE_SESSIONS_PER_USER) {
+            session.close();
+        } else {
+            sessions.push(session);
+        }
+    }
+
+    /** Single persistent shell session, runs one framed command at a time */
+    private static class Session {
+        private final Proc proc;
+        private final OutputStream toShell;
+        private final InputStream fromShell;
+
+        private Session(Proc proc) {
+            this.proc = proc;
+            this.toShell = proc.getStdin();
+            this.fromShell = new BufferedInputStream(proc.getStdout());
+        }
+
+        static Session start(String containerId, String user, Launcher launcher, TaskListener listener)
+                throws IOException {
+            List<String> cmd = new ArrayList<>(List.of("docker", "exec", "-i"));
+            if (!user.isEmpty()) {
+                cmd.add("-u");
+                cmd.add(user);
+            }
+            cmd.add(containerId);
+            cmd.add("/bin/sh");
+
+            Proc proc = launcher.launch()
+                    .cmds(cmd)
+                    .writeStdin()
+                    .readStdout()
+                    .quiet(true)
+                    .start();
+
+            Session session = new Session(proc);
+            // Merge stderr into the framed stdout stream for the whole session
+            session.send("exec 2>&1\n");
+            return session;
+        }
+
+        int run(String command, Map<String, String> env, InputStream stdin, OutputStream output, int timeoutSeconds)
+                throws IOException, InterruptedException {
+            String nonce = UUID.randomUUID().toString().replace("-", "");
+            String marker = EXIT_MARKER + nonce + ":";
+
+            StringBuilder script = new StringBuilder();
+            // Stdin is piped from a heredoc rather than staged in a file, so secrets never reach the
+            // container's writable layer
+            if (stdin != null) {
+                script.append("base64 -d <<'EOF_").append(nonce).append("' | ");
+            }
+            script.append('(');
+            if (env != null) {
+                for (Map.Entry<String, String> var : env.entrySet()) {
+                    script.append("export ")
+                            .append(var.getKey())
+                            .append('=')
+                            .append(quote(var.getValue()))
+                            .append("; ");
+                }
+            }
+            script.append("exec /bin/sh -c ").append(quote(command)).append(')');
+            if (stdin != null) {
+                script.append('\n');
+                script.append(Base64.getMimeEncoder(76, new byte[] {'\n'}).encodeToString(stdin.readAllBytes()));
+                script.append("\nEOF_").append(nonce).append('\n');
+            } else {
+                script.append(" < /dev/null\n");
+            }
+            script.append("__pulsar_rc=$?\n");
+            script.append("printf '\\n%s%d\\n' '").append(marker).append("' \"$__pulsar_rc\"\n");
+
+            send(script.toString());
+
+            // Read on a pooled thread so the caller stays interruptible and the timeout can be enforced
+            Future<Integer> result = Computer.threadPoolForRemoting.submit(() -> copyUntilMarker(marker, output));
+            try {
+                Integer exitCode = result.get(timeoutSeconds, TimeUnit.SECONDS);
+                if (exitCode == null) {
+                    // Session died before the command completed
+                    close();
+                    return -1;
+                }
+                return exitCode;
+            } catch (TimeoutException e) {
+                close();
+                return -1;
+            } catch (InterruptedException e) {
+                close();
+                throw e;
+            } catch (ExecutionException e) {
+                close();
+                throw new IOException("Exec server session failed", e.getCause());
+            }
+        }
+
+        /** Copy framed output line by line until the exit marker, dropping the newline injected before it */
+        private Integer copyUntilMarker(String marker, OutputStream output) throws IOException {
+            byte[] markerBytes = marker.getBytes(StandardCharsets.UTF_8);
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            byte[] pending = null;
+
+            int b;
+            while ((b = fromShell.read()) != -1) {
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+
+                byte[] current = line.toByteArray();
+                line.reset();
+
+                if (startsWith(current, markerBytes)) {
+                    if (pending != null) {
+                        output.write(pending);
+                        output.flush();
+                    }
+                    String code = new String(
+                            current, markerBytes.length, current.length - markerBytes.length, StandardCharsets.UTF_8);
+                    return Integer.parseInt(code.trim());
+                }
+
+                if (pending != null) {
+                    output.write(pending);
+                    output.write('\n');
+                    output.flush();
+                }
+                pending = current;
+            }
+            return null;
+        }
+
+        private void send(String data) throws IOException {
+            toShell.write(data.getBytes(StandardCharsets.UTF_8));
+            toShell.flush();
+        }
+
+        boolean isAlive() {
+            try {
+                return proc.isAlive();
+            } catch (Exception e) {
+                return false;
+            }
+        }
+
+        void close() {
+            try {
+                toShell.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+            try {
+                proc.kill();
+            } catch (Exception e) {
+                LOGGER.log(Level.FINE, "Failed to kill exec server session", e);
+            }
+        }
+
+        private static boolean startsWith(byte[] data, byte[] prefix) {
+            if (data.length < prefix.length) {
+                return false;
+            }
+            for (int i = 0; i < prefix.length; i++) {
+                if (data[i] != prefix[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static String quote(String value) {
+            return "'" + (value != null ? value.replace("'", "'\\''") : "") + "'";
+        }
+    }
+}
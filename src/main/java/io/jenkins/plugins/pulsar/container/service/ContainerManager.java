@@ -1,15 +1,21 @@
 package io.jenkins.plugins.pulsar.container.service;
 
 import hudson.Launcher;
+import hudson.Util;
 import hudson.model.TaskListener;
+import io.jenkins.plugins.pulsar.container.ContainerGlobalConfiguration;
 import io.jenkins.plugins.pulsar.container.steps.SharedContainerStep;
 import io.jenkins.plugins.pulsar.shared.LaunchHelper;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -31,6 +37,19 @@ public class ContainerManager implements Serializable {
     private final String containerId;
     private int referenceCount = 0;
     private volatile boolean isKilled = false;
+    private transient boolean fresh = false;
+    // Set while the only holder needs the container to itself, new callers wait until it is cleared
+    private transient boolean exclusive = false;
+
+    // Optional persistent exec server, started lazily on first execute
+    private volatile boolean execServerEnabled = false;
+    private transient volatile ContainerExecServer execServer;
+
+    // Admission control: fair (FIFO) permits per container, 0 = use the global limit
+    private volatile int maxConcurrentExecs = 0;
+    private transient volatile Semaphore execPermits;
+    private transient volatile int execPermitCount = -1;
+    private final ExecStats execStats = new ExecStats();
 
     // Environment variables for this container instance
     private final Map<String, String> env = new ConcurrentHashMap<>();
@@ -45,21 +64,50 @@ public class ContainerManager implements Serializable {
     public static ContainerManager getOrCreate(
             String nodeName, String image, SharedContainerStep step, Launcher launcher, TaskListener listener)
             throws IOException, InterruptedException {
+        return getOrCreate(nodeName, image, image, step, launcher, listener);
+    }
+
+    /**
+     * Get or create a shared container for the given image. A new container is started from runImage
+     * (e.g. a prepared snapshot of the image) but is registered and labelled under image.
+     */
+    public static ContainerManager getOrCreate(
+            String nodeName,
+            String image,
+            String runImage,
+            SharedContainerStep step,
+            Launcher launcher,
+            TaskListener listener)
+            throws IOException, InterruptedException {
 
         String containerKey = nodeName + ":" + image;
 
         synchronized (ContainerManager.class) {
             ContainerManager existing = activeContainers.get(containerKey);
+            while (existing != null && existing.exclusive) {
+                // Held exclusively, e.g. while it is committed to a snapshot: wait rather than write into it
+                ContainerManager.class.wait();
+                existing = activeContainers.get(containerKey);
+            }
             if (existing != null && !existing.isKilled && existing.isRunning(launcher, listener)) {
                 existing.referenceCount++;
+                if (step.isExecServer()) {
+                    existing.execServerEnabled = true;
+                }
+                if (step.getMaxConcurrentExecs() > 0) {
+                    existing.maxConcurrentExecs = step.getMaxConcurrentExecs();
+                }
                 listener.getLogger().println("Reusing active container: " + existing.getShortId());
                 return existing;
             }
 
             // Create new container
-            String containerId = createContainer(nodeName, image, step, launcher, listener);
+            String containerId = createContainer(nodeName, image, runImage, step, launcher, listener);
 
             ContainerManager manager = new ContainerManager(nodeName, image, containerId);
+            manager.execServerEnabled = step.isExecServer();
+            manager.maxConcurrentExecs = step.getMaxConcurrentExecs();
+            manager.fresh = true;
             activeContainers.put(containerKey, manager);
 
             listener.getLogger().println("Created container: " + manager.getShortId());
@@ -69,7 +117,12 @@ public class ContainerManager implements Serializable {
 
     /** Create a new Docker container */
     private static String createContainer(
-            String nodeName, String image, SharedContainerStep step, Launcher launcher, TaskListener listener)
+            String nodeName,
+            String image,
+            String runImage,
+            SharedContainerStep step,
+            Launcher launcher,
+            TaskListener listener)
             throws IOException, InterruptedException {
         List<String> dockerCmd = new ArrayList<>(step.buildDockerRunArgs());
 
@@ -83,7 +136,7 @@ public class ContainerManager implements Serializable {
         dockerCmd.add(CREATED_LABEL_PREFIX + System.currentTimeMillis());
 
         // Build docker run command with tracking labels
-        dockerCmd.add(image);
+        dockerCmd.add(runImage);
         dockerCmd.add("sleep");
         dockerCmd.add(String.valueOf(step.getTimeoutHours() * 3600));
 
@@ -123,7 +176,17 @@ public class ContainerManager implements Serializable {
         return execute(command, user, additionalEnv, null, launcher, listener);
     }
 
-    /** Main execute method with optional stdin support */
+    /** Write all files of the bundle as root with a single exec, returns the exit code */
+    public int writeFiles(FileBundle bundle, Launcher launcher, TaskListener listener)
+            throws IOException, InterruptedException {
+        if (bundle.isEmpty()) {
+            return 0;
+        }
+        return execute(
+                bundle.buildExtractCmd(), "root", null, new ByteArrayInputStream(bundle.toTar()), launcher, listener);
+    }
+
+    /** Execute with optional stdin support, output goes to the build log */
     public int execute(
             String command,
             String user,
@@ -132,12 +195,113 @@ public class ContainerManager implements Serializable {
             Launcher launcher,
             TaskListener listener)
             throws IOException, InterruptedException {
+        return execute(command, user, additionalEnv, stdin, listener.getLogger(), launcher, listener);
+    }
+
+    /** Main execute method with optional stdin support and a custom output stream */
+    public int execute(
+            String command,
+            String user,
+            Map<String, String> additionalEnv,
+            InputStream stdin,
+            OutputStream output,
+            Launcher launcher,
+            TaskListener listener)
+            throws IOException, InterruptedException {
 
         if (isKilled) {
             listener.getLogger().println("Cannot execute: container " + getShortId() + " has been killed");
             return -1;
         }
 
+        // Combine environment variables (instance env + additional env)
+        Map<String, String> allEnv = new LinkedHashMap<>(this.env);
+        if (additionalEnv != null) {
+            allEnv.putAll(additionalEnv);
+        }
+
+        Semaphore permits = acquireExecSlot(command, listener);
+        try {
+            return executeAdmitted(command, user, allEnv, stdin, output, launcher, listener);
+        } finally {
+            if (permits != null) {
+                permits.release();
+            }
+        }
+    }
+
+    /** Wait for an exec slot, returns the semaphore to release or null when execs are unlimited */
+    private Semaphore acquireExecSlot(String command, TaskListener listener) throws IOException, InterruptedException {
+        Semaphore permits = getExecPermits();
+        execStats.execs.incrementAndGet();
+        if (permits == null || permits.tryAcquire()) {
+            return permits;
+        }
+
+        ContainerGlobalConfiguration config = ContainerGlobalConfiguration.get();
+        listener.getLogger()
+                .println("Container " + getShortId() + " is at its exec limit (" + execPermitCount + "), queued behind "
+                        + permits.getQueueLength() + " other exec(s)");
+
+        long start = System.currentTimeMillis();
+        execStats.waiting.incrementAndGet();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(config.getExecQueueTimeoutSeconds(), TimeUnit.SECONDS);
+        } finally {
+            execStats.waiting.decrementAndGet();
+        }
+        long waited = System.currentTimeMillis() - start;
+        execStats.recordWait(waited);
+
+        if (!acquired) {
+            execStats.rejected.incrementAndGet();
+            throw new IOException("Timed out after " + Util.getTimeSpanString(waited)
+                    + " waiting for an exec slot on container " + getShortId());
+        }
+        listener.getLogger()
+                .println("Waited " + Util.getTimeSpanString(waited) + " for an exec slot on container " + getShortId());
+        LOGGER.log(Level.FINE, "Exec on {0} queued for {1} ms: {2}", new Object[] {getShortId(), waited, command});
+        return permits;
+    }
+
+    /** Current permits for the effective limit, replaced when the limit changes */
+    private Semaphore getExecPermits() {
+        int limit = maxConcurrentExecs > 0
+                ? maxConcurrentExecs
+                : ContainerGlobalConfiguration.get().getMaxConcurrentExecs();
+        if (limit != execPermitCount || (limit > 0 && execPermits == null)) {
+            synchronized (this) {
+                if (limit != execPermitCount || (limit > 0 && execPermits == null)) {
+                    // Holders of the old semaphore release to it, so the new limit applies to new execs only
+                    execPermits = limit > 0 ? new Semaphore(limit, true) : null;
+                    execPermitCount = limit;
+                }
+            }
+        }
+        return execPermits;
+    }
+
+    private int executeAdmitted(
+            String command,
+            String user,
+            Map<String, String> allEnv,
+            InputStream stdin,
+            OutputStream output,
+            Launcher launcher,
+            TaskListener listener)
+            throws IOException, InterruptedException {
+        int timeoutSeconds = ContainerGlobalConfiguration.get().getExecTimeoutSeconds();
+
+        if (execServerEnabled) {
+            Integer exitCode =
+                    getExecServer().execute(command, user, allEnv, stdin, output, timeoutSeconds, launcher, listener);
+            if (exitCode != null) {
+                return exitCode;
+            }
+            LOGGER.log(Level.FINE, "Exec server unavailable for container {0}, using docker exec", getShortId());
+        }
+
         // Build docker exec command
         List<String> dockerCmd = new ArrayList<>();
         dockerCmd.add("docker");
@@ -154,12 +318,6 @@ public class ContainerManager implements Serializable {
             dockerCmd.add(user);
         }
 
-        // Combine environment variables (instance env + additional env)
-        Map<String, String> allEnv = new LinkedHashMap<>(this.env);
-        if (additionalEnv != null) {
-            allEnv.putAll(additionalEnv);
-        }
-
         // Add environment variables to docker exec
         for (Map.Entry<String, String> envVar : allEnv.entrySet()) {
             dockerCmd.add("-e");
@@ -174,8 +332,8 @@ public class ContainerManager implements Serializable {
         // Build launcher with optional stdin
         Launcher.ProcStarter procStarter = launcher.launch()
                 .cmds(dockerCmd)
-                .stdout(listener.getLogger())
-                .stderr(listener.getLogger())
+                .stdout(output)
+                .stderr(output)
                 .quiet(true);
 
         // Add stdin only if provided
@@ -183,7 +341,52 @@ public class ContainerManager implements Serializable {
             procStarter = procStarter.stdin(stdin);
         }
 
-        return procStarter.start().joinWithTimeout(300, TimeUnit.SECONDS, listener);
+        return procStarter.start().joinWithTimeout(timeoutSeconds, TimeUnit.SECONDS, listener);
+    }
+
+    private ContainerExecServer getExecServer() {
+        ContainerExecServer server = execServer;
+        if (server == null) {
+            synchronized (this) {
+                server = execServer;
+                if (server == null) {
+                    server = new ContainerExecServer(containerId);
+                    execServer = server;
+                }
+            }
+        }
+        return server;
+    }
+
+    public boolean isExecServerEnabled() {
+        return execServerEnabled;
+    }
+
+    /** True for the first caller after this container was created, false once claimed or when adopted */
+    public synchronized boolean claimFresh() {
+        boolean wasFresh = fresh;
+        fresh = false;
+        return wasFresh;
+    }
+
+    /** Hold the container exclusively when no other caller shares it, returns false when one does */
+    public boolean beginExclusive() {
+        synchronized (ContainerManager.class) {
+            // The creator is not counted, so any reference means another caller shares the container
+            if (isKilled || referenceCount > 0) {
+                return false;
+            }
+            exclusive = true;
+            return true;
+        }
+    }
+
+    /** End an exclusive hold, letting waiting callers reuse the container */
+    public void endExclusive() {
+        synchronized (ContainerManager.class) {
+            exclusive = false;
+            ContainerManager.class.notifyAll();
+        }
     }
 
     /** Set environment variable for this container instance */
@@ -251,6 +454,9 @@ public class ContainerManager implements Serializable {
         } finally {
             isKilled = true;
             env.clear(); // Clear environment variables
+            if (execServer != null) {
+                execServer.close();
+            }
         }
     }
 
@@ -326,4 +532,81 @@ public class ContainerManager implements Serializable {
     public boolean isKilled() {
         return isKilled;
     }
+
+    /** Effective concurrent exec limit, 0 when unlimited */
+    public int getExecLimit() {
+        getExecPermits();
+        return Math.max(0, execPermitCount);
+    }
+
+    /** Number of execs currently running in this container */
+    public int getActiveExecs() {
+        Semaphore permits = getExecPermits();
+        return permits != null ? execPermitCount - permits.availablePermits() : 0;
+    }
+
+    public ExecStats getExecStats() {
+        return execStats;
+    }
+
+    /** Snapshot of the active containers, sorted by node and image */
+    public static List<ContainerManager> getActiveContainers() {
+        List<ContainerManager> containers = new ArrayList<>(activeContainers.values());
+        containers.sort(Comparator.comparing(ContainerManager::getNodeName).thenComparing(ContainerManager::getImage));
+        return containers;
+    }
+
+    /** Exec admission counters for one container */
+    public static class ExecStats implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final AtomicLong execs = new AtomicLong();
+        private final AtomicLong queuedExecs = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong totalWaitMillis = new AtomicLong();
+        private final AtomicLong maxWaitMillis = new AtomicLong();
+        private final AtomicLong waiting = new AtomicLong();
+
+        void recordWait(long waitMillis) {
+            queuedExecs.incrementAndGet();
+            totalWaitMillis.addAndGet(waitMillis);
+            maxWaitMillis.accumulateAndGet(waitMillis, Math::max);
+        }
+
+        public long getExecs() {
+            return execs.get();
+        }
+
+        /** Execs that had to wait for a slot */
+        public long getQueuedExecs() {
+            return queuedExecs.get();
+        }
+
+        /** Execs that gave up waiting for a slot */
+        public long getRejected() {
+            return rejected.get();
+        }
+
+        /** Execs waiting for a slot right now */
+        public long getWaiting() {
+            return waiting.get();
+        }
+
+        public long getMaxWaitMillis() {
+            return maxWaitMillis.get();
+        }
+
+        public long getAverageWaitMillis() {
+            long queued = queuedExecs.get();
+            return queued > 0 ? totalWaitMillis.get() / queued : 0;
+        }
+
+        public String getMaxWait() {
+            return Util.getTimeSpanString(getMaxWaitMillis());
+        }
+
+        public String getAverageWait() {
+            return Util.getTimeSpanString(getAverageWaitMillis());
+        }
+    }
 }
@@ -0,0 +1,70 @@
+package io.jenkins.plugins.pulsar.container.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+
+/**
+ * Files to write into a container, packed into an in-memory tar stream so any number of them is
+ * delivered by a single exec. Contents never touch the agent's disk, and files are created with
+ * owner-only permissions.
+ */
+public class FileBundle {
+    private static final int MODE = 0600;
+
+    private final Map<String, byte[]> files = new LinkedHashMap<>();
+
+    /** Add a file by absolute path, replacing an earlier one at the same path */
+    public FileBundle add(String path, byte[] content) {
+        if (!path.startsWith("/")) {
+            throw new IllegalArgumentException("Path must be absolute: " + path);
+        }
+        files.put(path, content);
+        return this;
+    }
+
+    public FileBundle add(String path, String content) {
+        return add(path, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public boolean isEmpty() {
+        return files.isEmpty();
+    }
+
+    public int size() {
+        return files.size();
+    }
+
+    public List<String> getPaths() {
+        return new ArrayList<>(files.keySet());
+    }
+
+    /** Shell command extracting the tar stream from stdin; directories it creates are owner-only too */
+    public String buildExtractCmd() {
+        return "umask 077 && tar -x -o -f - -C /";
+    }
+
+    /** The files as a tar archive with paths relative to the root directory */
+    public byte[] toTar() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream tar = new TarArchiveOutputStream(out, StandardCharsets.UTF_8.name())) {
+            // Paths over 100 bytes go as GNU long names, which GNU tar and busybox tar both read
+            tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_GNU);
+            for (Map.Entry<String, byte[]> file : files.entrySet()) {
+                TarArchiveEntry entry = new TarArchiveEntry(file.getKey().substring(1));
+                entry.setMode(MODE);
+                entry.setSize(file.getValue().length);
+                tar.putArchiveEntry(entry);
+                tar.write(file.getValue());
+                tar.closeArchiveEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,323 @@
+package io.jenkins.plugins.pulsar.container.service;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.Launcher;
+import hudson.Util;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Computer;
+import hudson.model.Label;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.slaves.ComputerListener;
+import hudson.util.LogTaskListener;
+import io.jenkins.plugins.pulsar.ansible.AnsibleProjectsGlobalConfiguration;
+import io.jenkins.plugins.pulsar.ansible.model.AnsibleEnvGroupConfig;
+import io.jenkins.plugins.pulsar.ansible.model.AnsibleProject;
+import io.jenkins.plugins.pulsar.container.ContainerGlobalConfiguration;
+import io.jenkins.plugins.pulsar.environment.EnvironmentACLGlobalConfiguration;
+import io.jenkins.plugins.pulsar.environment.model.EnvironmentGroup;
+import io.jenkins.plugins.pulsar.shared.LaunchHelper;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+
+/**
+ * Keeps exec environment images warm on the nodes that will run them. Images come from the Ansible
+ * project exec environments (optionally digest-pinned) plus the extra images of the shared
+ * container configuration, and are pulled onto every online node matching the node labels of the
+ * environment groups they serve. Runs when a node comes online and periodically afterwards.
+ */
+@Extension
+public class ImagePrefetchService extends AsyncPeriodicWork {
+    private static final Logger LOGGER = Logger.getLogger(ImagePrefetchService.class.getName());
+
+    private static final long TICK_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final int INSPECT_TIMEOUT_SECONDS = 30;
+    private static final int PULL_TIMEOUT_SECONDS = 1800;
+
+    // nodeName -> image -> status
+    private final Map<String, Map<String, ImageStatus>> nodeStatus = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastPrefetch = new ConcurrentHashMap<>();
+    private final Set<String> runningNodes = ConcurrentHashMap.newKeySet();
+
+    private volatile Semaphore pullPermits = new Semaphore(2, true);
+    private volatile int pullPermitCount = 2;
+
+    public ImagePrefetchService() {
+        super("Exec environment image prefetch");
+    }
+
+    public static ImagePrefetchService get() {
+        return ExtensionList.lookupSingleton(ImagePrefetchService.class);
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return TICK_MILLIS;
+    }
+
+    @Override
+    protected void execute(TaskListener listener) {
+        ContainerGlobalConfiguration config = ContainerGlobalConfiguration.get();
+        if (!config.isPrefetchEnabled()) {
+            return;
+        }
+
+        long interval = TimeUnit.MINUTES.toMillis(config.getPrefetchIntervalMinutes());
+        long now = System.currentTimeMillis();
+
+        for (Computer computer : Jenkins.get().getComputers()) {
+            Long last = lastPrefetch.get(LaunchHelper.getNodeName(computer));
+            if (last == null || now - last >= interval) {
+                prefetchNode(computer);
+            }
+        }
+    }
+
+    /** Prefetch on every online node now, regardless of the interval */
+    public void prefetchAll() {
+        for (Computer computer : Jenkins.get().getComputers()) {
+            prefetchNode(computer);
+        }
+    }
+
+    /** Schedule a prefetch for one node, skipped if one is already running there */
+    public void prefetchNode(Computer computer) {
+        String nodeName = LaunchHelper.getNodeName(computer);
+        if (!runningNodes.add(nodeName)) {
+            return;
+        }
+
+        Computer.threadPoolForRemoting.submit(() -> {
+            try {
+                prefetch(computer, nodeName);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Image prefetch failed on node " + nodeName, e);
+            } finally {
+                runningNodes.remove(nodeName);
+            }
+        });
+    }
+
+    private void prefetch(Computer computer, String nodeName) throws InterruptedException {
+        Node node = computer.getNode();
+        TaskListener listener = new LogTaskListener(LOGGER, Level.FINE);
+        Launcher launcher = LaunchHelper.getLauncher(computer, listener);
+        if (node == null || launcher == null) {
+            LOGGER.fine("Node " + nodeName + " is not reachable, skipping image prefetch");
+            return;
+        }
+
+        Set<String> images = getImagesForNode(node);
+        Map<String, ImageStatus> statuses = nodeStatus.computeIfAbsent(nodeName, k -> new ConcurrentHashMap<>());
+        statuses.keySet().retainAll(images);
+
+        boolean allWarm = true;
+        for (String image : images) {
+            ImageStatus status = ensureImage(image, launcher, listener);
+            statuses.put(image, status);
+            allWarm &= status.isWarm();
+        }
+
+        // Failed nodes are retried on the next tick instead of waiting a full interval
+        if (allWarm) {
+            lastPrefetch.put(nodeName, System.currentTimeMillis());
+        }
+        LOGGER.fine("Image prefetch completed for node " + nodeName + ": " + statuses.values());
+    }
+
+    private ImageStatus ensureImage(String image, Launcher launcher, TaskListener listener)
+            throws InterruptedException {
+        try {
+            boolean pinned = image.contains("@sha256:");
+            boolean present = LaunchHelper.executeQuietlyDiscardOutput(
+                            launcher, List.of("docker", "image", "inspect", image), INSPECT_TIMEOUT_SECONDS, listener)
+                    == 0;
+
+            if (present && (pinned || !ContainerGlobalConfiguration.get().isPrefetchRefreshTags())) {
+                return ImageStatus.of(image, ImageStatus.State.WARM, null);
+            }
+
+            Semaphore permits = getPullPermits();
+            permits.acquire();
+            try {
+                long start = System.currentTimeMillis();
+                String output = LaunchHelper.executeAndCapture(
+                        launcher, List.of("docker", "pull", "-q", image), PULL_TIMEOUT_SECONDS, listener);
+                boolean pulled = LaunchHelper.executeQuietlyDiscardOutput(
+                                launcher,
+                                List.of("docker", "image", "inspect", image),
+                                INSPECT_TIMEOUT_SECONDS,
+                                listener)
+                        == 0;
+
+                if (!pulled) {
+                    return ImageStatus.of(image, ImageStatus.State.FAILED, output);
+                }
+                return ImageStatus.of(
+                        image,
+                        ImageStatus.State.WARM,
+                        "pulled in " + Util.getTimeSpanString(System.currentTimeMillis() - start));
+            } finally {
+                permits.release();
+            }
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            return ImageStatus.of(image, ImageStatus.State.FAILED, e.getMessage());
+        }
+    }
+
+    /** Images that should be warm on the given node */
+    public Set<String> getImagesForNode(Node node) {
+        EnvironmentACLGlobalConfiguration envConfig = EnvironmentACLGlobalConfiguration.get();
+        Set<String> images = new LinkedHashSet<>();
+        boolean servesAnyGroup = false;
+
+        for (EnvironmentGroup group : envConfig.getEnvironmentGroups()) {
+            if (!matches(group, node)) {
+                continue;
+            }
+            servesAnyGroup = true;
+
+            for (AnsibleProject project : AnsibleProjectsGlobalConfiguration.get().getProjects()) {
+                String image = project.getExecEnvImage();
+                if (image == null || image.trim().isEmpty()) {
+                    continue;
+                }
+                for (AnsibleEnvGroupConfig envGroup : project.getEnvGroups()) {
+                    if (group.getName().equals(envGroup.getGroupName())) {
+                        images.add(image.trim());
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (servesAnyGroup) {
+            for (String image : ContainerGlobalConfiguration.get().getPrefetchImages()) {
+                if (image != null && !image.trim().isEmpty()) {
+                    images.add(image.trim());
+                }
+            }
+        }
+
+        return images;
+    }
+
+    private static boolean matches(EnvironmentGroup group, Node node) {
+        try {
+            return Label.parseExpression(group.getNodeLabelsAsString()).matches(node);
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Invalid node label expression for group " + group.getName(), e);
+            return false;
+        }
+    }
+
+    private Semaphore getPullPermits() {
+        int configured = ContainerGlobalConfiguration.get().getPrefetchConcurrency();
+        if (configured != pullPermitCount) {
+            synchronized (this) {
+                if (configured != pullPermitCount) {
+                    pullPermits = new Semaphore(configured, true);
+                    pullPermitCount = configured;
+                }
+            }
+        }
+        return pullPermits;
+    }
+
+    /** Snapshot of image status per node, sorted by node name */
+    public Map<String, List<ImageStatus>> getNodeStatus() {
+        Map<String, List<ImageStatus>> snapshot = new TreeMap<>();
+        for (Map.Entry<String, Map<String, ImageStatus>> entry : nodeStatus.entrySet()) {
+            List<ImageStatus> statuses = new ArrayList<>(entry.getValue().values());
+            statuses.sort((a, b) -> a.getImage().compareTo(b.getImage()));
+            snapshot.put(entry.getKey(), Collections.unmodifiableList(statuses));
+        }
+        return snapshot;
+    }
+
+    /** Whether every image expected on the node is present */
+    public boolean isNodeWarm(String nodeName) {
+        Map<String, ImageStatus> statuses = nodeStatus.get(nodeName);
+        return statuses != null && !statuses.isEmpty() && statuses.values().stream().allMatch(ImageStatus::isWarm);
+    }
+
+    public boolean isRunning(String nodeName) {
+        return runningNodes.contains(nodeName);
+    }
+
+    /** Prefetch state of one image on one node */
+    public static class ImageStatus {
+        public enum State {
+            WARM,
+            FAILED
+        }
+
+        private final String image;
+        private final State state;
+        private final String message;
+        private final long checkedAt;
+
+        private ImageStatus(String image, State state, String message) {
+            this.image = image;
+            this.state = state;
+            this.message = message;
+            this.checkedAt = System.currentTimeMillis();
+        }
+
+        static ImageStatus of(String image, State state, String message) {
+            return new ImageStatus(image, state, message);
+        }
+
+        public String getImage() {
+            return image;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        public boolean isWarm() {
+            return state == State.WARM;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public String getCheckedAgo() {
+            return Util.getTimeSpanString(System.currentTimeMillis() - checkedAt);
+        }
+
+        @Override
+        public String toString() {
+            return image + "=" + state;
+        }
+    }
+
+    /** Prefetch as soon as a node comes online so its first build does not pay the pull */
+    @Extension
+    public static class NodeOnlineListener extends ComputerListener {
+        @Override
+        public void onOnline(Computer computer, TaskListener listener) {
+            if (ContainerGlobalConfiguration.get().isPrefetchEnabled()) {
+                ImagePrefetchService.get().prefetchNode(computer);
+            }
+        }
+    }
+}
@@ -6,7 +6,10 @@ import hudson.model.TaskListener;
 import io.jenkins.plugins.pulsar.container.service.ContainerCleaner;
 import io.jenkins.plugins.pulsar.container.service.ContainerManager;
 import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 import org.jenkinsci.plugins.workflow.steps.Step;
 import org.jenkinsci.plugins.workflow.steps.StepContext;
 import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
@@ -60,7 +63,8 @@ public class CleanupContainersStep extends Step implements Serializable {
         }
     }
 
-    static class CleanupContainersStepExecution extends SynchronousNonBlockingStepExecution<Void> {
+    static class CleanupContainersStepExecution
+            extends SynchronousNonBlockingStepExecution<List<Map<String, Object>>> {
         private final CleanupContainersStep step;
 
         CleanupContainersStepExecution(CleanupContainersStep step, StepContext context) {
@@ -69,14 +73,16 @@ public class CleanupContainersStep extends Step implements Serializable {
         }
 
         @Override
-        protected Void run() throws Exception {
+        protected List<Map<String, Object>> run() throws Exception {
             TaskListener listener = getContext().get(TaskListener.class);
             Launcher launcher = getContext().get(Launcher.class);
 
             if (step.isForce()) {
-                // Force cleanup: find and destroy ALL managed containers
-                listener.getLogger().println("Force cleanup: removing ALL managed containers...");
-                ContainerCleaner.cleanupAllManagedContainers(launcher, listener);
+                // Force cleanup: find and destroy ALL managed containers on every online node
+                listener.getLogger().println("Force cleanup: removing ALL managed containers on all online nodes...");
+                return ContainerCleaner.cleanupAllNodes(listener).stream()
+                        .map(ContainerCleaner.CleanupSummary::toMap)
+                        .collect(Collectors.toList());
             } else {
                 // Normal cleanup: only active containers known to this session
                 listener.getLogger().println("Cleaning up active shared containers...");
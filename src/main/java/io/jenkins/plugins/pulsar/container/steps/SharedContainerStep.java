@@ -26,6 +26,8 @@ public class SharedContainerStep extends Step implements Serializable {
     private boolean cleanup = true;
     private String options = "";
     private int timeoutHours = 8;
+    private boolean execServer = false;
+    private int maxConcurrentExecs = 0;
 
     @DataBoundConstructor
     public SharedContainerStep(String image) {
@@ -48,6 +50,14 @@ public class SharedContainerStep extends Step implements Serializable {
         return timeoutHours;
     }
 
+    public boolean isExecServer() {
+        return execServer;
+    }
+
+    public int getMaxConcurrentExecs() {
+        return maxConcurrentExecs;
+    }
+
     @DataBoundSetter
     public void setCleanup(boolean keepContainer) {
         this.cleanup = keepContainer;
@@ -64,6 +74,18 @@ public class SharedContainerStep extends Step implements Serializable {
         this.timeoutHours = Math.max(1, Math.min(24, timeoutHours));
     }
 
+    /** Route commands through a persistent exec server inside the container instead of one docker exec each */
+    @DataBoundSetter
+    public void setExecServer(boolean execServer) {
+        this.execServer = execServer;
+    }
+
+    /** Limit concurrent execs in this container, 0 keeps the global limit */
+    @DataBoundSetter
+    public void setMaxConcurrentExecs(int maxConcurrentExecs) {
+        this.maxConcurrentExecs = Math.max(0, maxConcurrentExecs);
+    }
+
     /** Build Docker run command with user options */
     public List<String> buildDockerRunArgs() {
         List<String> args = new ArrayList<>();
@@ -2,15 +2,22 @@ package io.jenkins.plugins.pulsar.deployment;
 
 import com.cloudbees.hudson.plugins.folder.Folder;
 import hudson.model.Descriptor.FormException;
+import hudson.model.Job;
 import hudson.model.ParameterDefinition;
+import hudson.model.ParameterValue;
 import hudson.model.ParametersDefinitionProperty;
 import hudson.model.TopLevelItem;
 import io.jenkins.plugins.pulsar.deployment.model.DeploymentJob;
+import io.jenkins.plugins.pulsar.deployment.model.DeploymentTarget;
 import io.jenkins.plugins.pulsar.deployment.model.DeploymentTemplate;
+import io.jenkins.plugins.pulsar.deployment.model.PromptDefinition;
+import io.jenkins.plugins.pulsar.environment.EnvironmentACLGlobalConfiguration;
 import io.jenkins.plugins.pulsar.environment.parameters.EnvironmentChoiceParameterDefinition;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import jenkins.model.Jenkins;
@@ -23,6 +30,7 @@ public class DeploymentJobManager {
 
     private static final Logger LOGGER = Logger.getLogger(DeploymentJobManager.class.getName());
     private static final String ROOT_FOLDER_NAME = "projects";
+    public static final String JOB_NAME_PREFIX = "PulsarJob_";
     private static DeploymentJobManager instance;
 
     private DeploymentJobManager() {}
@@ -58,7 +66,7 @@ public class DeploymentJobManager {
 
     public void createOrUpdateJob(Folder parent, DeploymentJob jobConfig)
             throws IOException, AccessDeniedException, InterruptedException, FormException {
-        String jobName = "PulsarJob_" + jobConfig.getId();
+        String jobName = JOB_NAME_PREFIX + jobConfig.getId();
 
         TopLevelItem existing = parent.getItem(jobName);
         WorkflowJob job;
@@ -202,4 +210,56 @@ public class DeploymentJobManager {
 
         return null;
     }
+
+    /**
+     * Resolve the Ansible project, ref and environment a generated job will deploy with the given
+     * build parameters, null if the job is not a deployment job or the target is not known yet.
+     * Follows the precedence of resolveDeployParams: build parameters, then the job's fixed values.
+     */
+    public static DeploymentTarget resolveTarget(Job<?, ?> job, List<ParameterValue> parameters) {
+        if (!job.getName().startsWith(JOB_NAME_PREFIX)) {
+            return null;
+        }
+        String jobId = job.getName().substring(JOB_NAME_PREFIX.length());
+
+        DeploymentGlobalConfiguration config = DeploymentGlobalConfiguration.get();
+        DeploymentJob jobConfig = config.getComponentById(jobId);
+        DeploymentTemplate template = jobConfig != null ? config.getTemplate(jobConfig.getTemplateName()) : null;
+        if (template == null) {
+            return null;
+        }
+
+        Map<String, String> values = new HashMap<>();
+        if (parameters != null) {
+            for (ParameterValue parameter : parameters) {
+                if (parameter.getValue() != null) {
+                    values.put(parameter.getName(), parameter.getValue().toString());
+                }
+            }
+        }
+        values.putAll(jobConfig.getParamsAsMap());
+
+        String environment = values.get("environment");
+        if (environment == null || environment.trim().isEmpty()) {
+            return null;
+        }
+
+        for (PromptDefinition prompt : template.getParams()) {
+            String projectId = prompt.getProperty("projectId");
+            String ref = values.get(prompt.getName());
+            if ("ansibleprojectref".equalsIgnoreCase(prompt.getType())
+                    && projectId != null
+                    && ref != null
+                    && !ref.trim().isEmpty()) {
+                String nodeLabels;
+                try {
+                    nodeLabels = EnvironmentACLGlobalConfiguration.get().getNodeLabelsForEnvironment(environment);
+                } catch (RuntimeException e) {
+                    return null;
+                }
+                return new DeploymentTarget(jobId, projectId, ref.trim(), environment, nodeLabels);
+            }
+        }
+        return null;
+    }
 }
@@ -0,0 +1,44 @@
+package io.jenkins.plugins.pulsar.deployment.model;
+
+/** Where a queued deployment build is going to run: Ansible project, ref and target environment */
+public class DeploymentTarget {
+    private final String jobId;
+    private final String projectId;
+    private final String ref;
+    private final String environment;
+    private final String nodeLabels;
+
+    public DeploymentTarget(String jobId, String projectId, String ref, String environment, String nodeLabels) {
+        this.jobId = jobId;
+        this.projectId = projectId;
+        this.ref = ref;
+        this.environment = environment;
+        this.nodeLabels = nodeLabels;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public String getProjectId() {
+        return projectId;
+    }
+
+    public String getRef() {
+        return ref;
+    }
+
+    public String getEnvironment() {
+        return environment;
+    }
+
+    /** Label expression of the nodes serving the environment */
+    public String getNodeLabels() {
+        return nodeLabels;
+    }
+
+    @Override
+    public String toString() {
+        return jobId + " -> " + projectId + "@" + ref + " (" + environment + ")";
+    }
+}
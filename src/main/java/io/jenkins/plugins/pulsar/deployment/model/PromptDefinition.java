@@ -97,7 +97,10 @@ public class PromptDefinition {
             }
 
             case "ansibleprojectref" -> {
-                return new AnsibleProjectRefParameterDefinition(name, description, getProperty("projectId"));
+                AnsibleProjectRefParameterDefinition definition =
+                        new AnsibleProjectRefParameterDefinition(name, description, getProperty("projectId"));
+                definition.setIncludeTags(Boolean.parseBoolean(getProperty("includeTags")));
+                return definition;
             }
             case "password" -> {
                 return new hudson.model.PasswordParameterDefinition(
@@ -2,6 +2,8 @@ package io.jenkins.plugins.pulsar.shared;
 
 import hudson.EnvVars;
 import hudson.Launcher;
+import hudson.model.Computer;
+import hudson.model.Node;
 import hudson.model.TaskListener;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -9,6 +11,7 @@ import java.io.OutputStream;
 import java.io.PrintStream;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import jenkins.model.Jenkins;
 import org.jenkinsci.plugins.workflow.steps.StepContext;
 
 public class LaunchHelper {
@@ -27,6 +30,29 @@ public class LaunchHelper {
         return "master";
     }
 
+    /** Get the node name of a computer, using "master" for the built-in node */
+    public static String getNodeName(Computer computer) {
+        String nodeName = computer.getName();
+        return (nodeName != null && !nodeName.trim().isEmpty()) ? nodeName : "master";
+    }
+
+    /** Find the computer of a node by the name used in node registries, null if it is gone */
+    public static Computer getComputer(String nodeName) {
+        if ("master".equals(nodeName)) {
+            return Jenkins.get().toComputer();
+        }
+        return Jenkins.get().getComputer(nodeName);
+    }
+
+    /** Get the node's own launcher for a computer, or null if the node is gone or has no usable channel */
+    public static Launcher getLauncher(Computer computer, TaskListener listener) {
+        Node node = computer.getNode();
+        if (node == null || !computer.isOnline() || computer.getChannel() == null) {
+            return null;
+        }
+        return node.createLauncher(listener);
+    }
+
     /** Execute with PrintStream output */
     public static int executeQuietly(
             Launcher launcher, List<String> command, PrintStream output, int timeoutSeconds, TaskListener listener)
@@ -0,0 +1,80 @@
+package io.jenkins.plugins.pulsar.shared;
+
+import hudson.model.TaskListener;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Listener prefixing every line with a tag, e.g. "[prod] ", so output of concurrent tasks sharing one
+ * build log stays attributable. Lines are written whole, so they never interleave mid-line.
+ */
+public class PrefixedTaskListener implements TaskListener {
+    private static final long serialVersionUID = 1L;
+
+    private final transient PrintStream logger;
+
+    public PrefixedTaskListener(TaskListener delegate, String prefix) {
+        this.logger = new PrintStream(new LineOutputStream(delegate.getLogger(), prefix), true, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public PrintStream getLogger() {
+        return logger;
+    }
+
+    /** Write out a trailing partial line */
+    public void close() {
+        logger.close();
+    }
+
+    private static class LineOutputStream extends OutputStream {
+        private final PrintStream delegate;
+        private final byte[] prefix;
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        LineOutputStream(PrintStream delegate, String prefix) {
+            this.delegate = delegate;
+            this.prefix = prefix.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            line.write(b);
+            if (b == '\n') {
+                flushLine();
+            }
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            int start = off;
+            for (int i = off; i < off + len; i++) {
+                if (b[i] == '\n') {
+                    line.write(b, start, i + 1 - start);
+                    flushLine();
+                    start = i + 1;
+                }
+            }
+            line.write(b, start, off + len - start);
+        }
+
+        @Override
+        public synchronized void close() {
+            if (line.size() > 0) {
+                line.write('\n');
+                flushLine();
+            }
+        }
+
+        private void flushLine() {
+            synchronized (delegate) {
+                delegate.write(prefix, 0, prefix.length);
+                delegate.write(line.toByteArray(), 0, line.size());
+                delegate.flush();
+            }
+            line.reset();
+        }
+    }
+}
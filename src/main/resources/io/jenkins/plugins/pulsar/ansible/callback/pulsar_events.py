@@ -0,0 +1,85 @@
+# Streams playbook events as JSON lines on stdout, next to the regular output, so the
+# Jenkins side can build per-host results while the playbook runs. Only active when
+# PULSAR_EVENT_MARKER is set; every event line starts with that marker.
+
+from __future__ import absolute_import, division, print_function
+
+__metaclass__ = type
+
+import json
+import os
+import sys
+import time
+
+from ansible.plugins.callback import CallbackBase
+
+DOCUMENTATION = """
+    name: pulsar_events
+    type: notification
+    short_description: JSON-lines playbook events for the Pulsar Jenkins plugin
+    description:
+      - Writes one JSON object per task result to stdout, prefixed with PULSAR_EVENT_MARKER.
+"""
+
+MAX_MSG = 1000
+
+
+class CallbackModule(CallbackBase):
+    CALLBACK_VERSION = 2.0
+    CALLBACK_TYPE = "notification"
+    CALLBACK_NAME = "pulsar_events"
+    CALLBACK_NEEDS_ENABLED = False
+
+    def __init__(self):
+        super(CallbackModule, self).__init__()
+        self._marker = os.environ.get("PULSAR_EVENT_MARKER")
+        self._play = None
+        self._task_start = {}
+
+    def _emit(self, event):
+        if not self._marker:
+            return
+        sys.stdout.write(self._marker + json.dumps(event, default=str) + "\n")
+        sys.stdout.flush()
+
+    def v2_playbook_on_play_start(self, play):
+        self._play = play.get_name()
+
+    def v2_playbook_on_task_start(self, task, is_conditional):
+        self._task_start[task._uuid] = time.time()
+
+    def v2_playbook_on_handler_task_start(self, task):
+        self._task_start[task._uuid] = time.time()
+
+    def _result(self, result, status):
+        task = result._task
+        start = self._task_start.get(task._uuid)
+        res = result._result if isinstance(result._result, dict) else {}
+        msg = res.get("msg") or res.get("stderr") or ""
+        self._emit({
+            "event": "result",
+            "play": self._play,
+            "task": task.get_name(),
+            "role": task._role.get_name() if task._role else None,
+            "action": task.action,
+            "host": result._host.get_name(),
+            "status": status,
+            "changed": bool(res.get("changed")),
+            "duration": int((time.time() - start) * 1000) if start else 0,
+            "msg": str(msg)[:MAX_MSG] if status in ("failed", "unreachable") else "",
+        })
+
+    def v2_runner_on_ok(self, result):
+        self._result(result, "ok")
+
+    def v2_runner_on_failed(self, result, ignore_errors=False):
+        self._result(result, "ignored" if ignore_errors else "failed")
+
+    def v2_runner_on_skipped(self, result):
+        self._result(result, "skipped")
+
+    def v2_runner_on_unreachable(self, result):
+        self._result(result, "unreachable")
+
+    def v2_playbook_on_stats(self, stats):
+        self._emit({"event": "stats", "hosts": sorted(stats.processed.keys())})
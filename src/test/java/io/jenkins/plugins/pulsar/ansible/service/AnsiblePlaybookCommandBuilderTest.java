@@ -0,0 +1,77 @@
+package io.jenkins.plugins.pulsar.ansible.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+class AnsiblePlaybookCommandBuilderTest {
+
+    @Test
+    void extraVarsJsonKeepsTypes() {
+        Map<String, Object> extraVars = new LinkedHashMap<>();
+        extraVars.put("replicas", 3);
+        extraVars.put("enabled", true);
+        extraVars.put("ratio", 0.5);
+        extraVars.put("hosts", List.of("web1", "web2"));
+        extraVars.put("db", Map.of("port", 5432, "name", "app"));
+        extraVars.put("motd", "it's \"quoted\"\nand $HOME");
+
+        JSONObject json = JSONObject.fromObject(new AnsiblePlaybookCommandBuilder()
+                .extraVars(extraVars)
+                .buildExtraVarsJson());
+
+        assertEquals(3, json.get("replicas"));
+        assertEquals(Boolean.TRUE, json.get("enabled"));
+        assertEquals(0.5, json.getDouble("ratio"));
+        assertEquals(JSONArray.fromObject(List.of("web1", "web2")), json.get("hosts"));
+        assertEquals(5432, json.getJSONObject("db").get("port"));
+        assertEquals("app", json.getJSONObject("db").get("name"));
+        assertEquals("it's \"quoted\"\nand $HOME", json.getString("motd"));
+    }
+
+    @Test
+    void extraVarsJsonWithoutVars() {
+        assertEquals("{}", new AnsiblePlaybookCommandBuilder().buildExtraVarsJson());
+    }
+
+    @Test
+    void largeExtraVarsStayOffTheCommandLine() {
+        Map<String, Object> extraVars = new LinkedHashMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            extraVars.put("var_" + i, "value '" + i + "' with some padding to make the map large");
+        }
+
+        AnsiblePlaybookCommandBuilder builder = new AnsiblePlaybookCommandBuilder()
+                .playbook("site.yml")
+                .projectRoot("/workspace/project")
+                .extraVars(extraVars)
+                .extraVarsFile("/dev/shm/pulsar-run/build-1.json");
+
+        String cmd = builder.buildCmd();
+        assertTrue(cmd.contains(" -e '@/dev/shm/pulsar-run/build-1.json'"), cmd);
+        assertFalse(cmd.contains("var_0"), cmd);
+        assertTrue(cmd.length() < 512, "Command has " + cmd.length() + " characters");
+
+        JSONObject json = JSONObject.fromObject(builder.buildExtraVarsJson());
+        assertEquals(10_000, json.size());
+        assertEquals("value '9999' with some padding to make the map large", json.getString("var_9999"));
+    }
+
+    @Test
+    void extraVarsInlineWithoutFile() {
+        String cmd = new AnsiblePlaybookCommandBuilder()
+                .playbook("site.yml")
+                .extraVars(Map.of("version", "1.2"))
+                .buildCmd();
+
+        assertTrue(cmd.contains(" -e 'version=1.2'"), cmd);
+        assertFalse(cmd.contains("-e '@"), cmd);
+    }
+}
@@ -0,0 +1,61 @@
+package io.jenkins.plugins.pulsar.container.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.junit.jupiter.api.Test;
+
+class FileBundleTest {
+
+    @Test
+    void tarRoundTrip() throws Exception {
+        String longPath = "/dev/shm/pulsar-run/" + "nested/".repeat(20) + "extra-vars.json";
+        byte[] binary = new byte[1500];
+        for (int i = 0; i < binary.length; i++) {
+            binary[i] = (byte) i;
+        }
+
+        FileBundle bundle = new FileBundle()
+                .add("/dev/shm/pulsar-vaults/prod.txt", "s3cret\n")
+                .add(longPath, "{\"replicas\": 3}")
+                .add("/workspace/project/ansible.cfg", binary)
+                .add("/dev/shm/pulsar-vaults/prod.txt", "rotated\n");
+
+        Map<String, byte[]> read = new LinkedHashMap<>();
+        try (TarArchiveInputStream tar = new TarArchiveInputStream(new ByteArrayInputStream(bundle.toTar()))) {
+            TarArchiveEntry entry;
+            while ((entry = tar.getNextEntry()) != null) {
+                assertEquals(0600, entry.getMode() & 07777, entry.getName());
+                assertEquals(0, entry.getLongUserId(), entry.getName());
+                read.put(entry.getName(), tar.readAllBytes());
+            }
+        }
+
+        assertEquals(3, read.size());
+        assertArrayEquals("rotated\n".getBytes(StandardCharsets.UTF_8), read.get("dev/shm/pulsar-vaults/prod.txt"));
+        assertArrayEquals("{\"replicas\": 3}".getBytes(StandardCharsets.UTF_8), read.get(longPath.substring(1)));
+        assertArrayEquals(binary, read.get("workspace/project/ansible.cfg"));
+        assertNull(read.get(longPath));
+    }
+
+    @Test
+    void emptyBundle() throws Exception {
+        FileBundle bundle = new FileBundle();
+        try (TarArchiveInputStream tar = new TarArchiveInputStream(new ByteArrayInputStream(bundle.toTar()))) {
+            assertNull(tar.getNextEntry());
+        }
+    }
+
+    @Test
+    void relativePathRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new FileBundle().add("tmp/file", "x"));
+    }
+}